@@ -0,0 +1,118 @@
+/**
+ * File name: SyntheticDataLoader.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * In-memory Redmine data loader serving a synthetic membership dataset,
+ * used by the benchmarks instead of a MySQL database
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.bench;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import ca.tentech.redmag.db.MemoryRedmineDataLoader;
+import ca.tentech.redmag.db.RedmineProject;
+
+/**
+ * <P>Serves a synthetic, reproducible membership dataset from memory. The
+ * dataset has the proportions of a large Redmine instance: about 40 members
+ * per project and 8 memberships per user. Role IDs are drawn from 3 to 6.</P>
+ *
+ * <P>Rows are spread evenly over the projects, in identifier order, and the
+ * same seed always produces the same dataset.</P>
+ *
+ * @author veilleux
+ */
+public class SyntheticDataLoader extends MemoryRedmineDataLoader {
+	/** Average number of members of a project */
+	public static final int MEMBERS_PER_PROJECT = 40;
+	/** Average number of projects of a user */
+	public static final int PROJECTS_PER_USER = 8;
+	/** Lowest role ID drawn */
+	public static final int FIRST_ROLE_ID = 3;
+	/** Number of distinct role IDs drawn */
+	public static final int ROLE_COUNT = 4;
+
+	/** Identifier of each project, sorted */
+	private String [] identifiers;
+	/** Login of each row */
+	private String [] loginColumn;
+	/** Role ID of each row */
+	private int [] roleColumn;
+
+	/**
+	 * @param rows - number of memberships to generate
+	 * @param seed - random generator seed
+	 */
+	public SyntheticDataLoader(int rows, long seed) {
+		Random random = new Random(seed);
+		int projectCount = Math.max(1, rows / MEMBERS_PER_PROJECT);
+		int userCount = Math.max(10, rows / PROJECTS_PER_USER);
+
+		Date now = new Date();
+		identifiers = new String [projectCount];
+		for (int i = 0; i < projectCount; i++) {
+			identifiers[i] = String.format("proj-%07d", i);
+			addProject(new RedmineProject(identifiers[i], identifiers[i], "", false, now));
+		}
+		for (int role = FIRST_ROLE_ID; role < FIRST_ROLE_ID + ROLE_COUNT; role++) {
+			addRole(role, "Role " + role);
+		}
+		String [] logins = new String [userCount];
+		for (int i = 0; i < userCount; i++) {
+			logins[i] = String.format("user%07d", i);
+		}
+
+		loginColumn = new String [rows];
+		roleColumn = new int [rows];
+		for (int row = 0; row < rows; row++) {
+			loginColumn[row] = logins[random.nextInt(userCount)];
+			roleColumn[row] = FIRST_ROLE_ID + random.nextInt(ROLE_COUNT);
+			addMembership(loginColumn[row], identifiers[(int) ((long) row * projectCount / rows)], roleColumn[row]);
+		}
+	}
+
+	/**
+	 * @return the identifiers of all projects, sorted
+	 */
+	public List<String> getProjectIdentifiers() {
+		return Arrays.asList(identifiers);
+	}
+
+	/**
+	 * @return the login of each membership row
+	 */
+	public List<String> getLogins() {
+		return Arrays.asList(loginColumn);
+	}
+
+	/**
+	 * @return the role ID of each membership row
+	 */
+	public int [] getRoleIds() {
+		return roleColumn.clone();
+	}
+}
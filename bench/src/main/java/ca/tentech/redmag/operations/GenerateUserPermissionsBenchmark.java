@@ -0,0 +1,156 @@
+/**
+ * File name: GenerateUserPermissionsBenchmark.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * JMH benchmark of the AuthZ file generation, over synthetic
+ * membership datasets
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.tentech.redmag.bench.SyntheticDataLoader;
+
+/**
+ * <P>Measures <code>generateUserPermissions()</code>, from the membership rows
+ * handed out by the loader to the published AuthZ file. The database is
+ * replaced by a <code>SyntheticDataLoader</code>, so the figures cover the
+ * grouping, formatting and file writing only.</P>
+ *
+ * <P>Each loading mode is measured: "default" gathers all rows in a list,
+ * "bulk" goes through the <code>MembershipStore</code> and "stream" handles
+ * one project at a time. Run with <code>-prof gc</code> for the allocation
+ * rate; the SampleTime mode reports the p0.99 latency of a run.</P>
+ *
+ * @author veilleux
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GenerateUserPermissionsBenchmark {
+	/** Seed of the synthetic dataset, fixed so that runs are comparable */
+	static final long SEED = 0x5eedL;
+
+	/** Number of membership rows */
+	@Param({"100", "10000", "1000000"})
+	public int rows;
+
+	/** Loading mode: "default", "bulk" or "stream" */
+	@Param({"default", "bulk", "stream"})
+	public String mode;
+
+	private File directory;
+	private File output;
+	private SvnReposAccessProcessor processor;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, SQLException {
+		directory = File.createTempFile("redmag-bench", "");
+		directory.delete();
+		directory.mkdir();
+		output = new File(directory, "authz");
+
+		SyntheticDataLoader loader = new SyntheticDataLoader(rows, SEED);
+
+		processor = new SvnReposAccessProcessor();
+		processor.setLoader(loader);
+		processor.setSvnRoot(directory.getAbsolutePath());
+		processor.setOutputFilename(output.getAbsolutePath());
+		processor.setReadRoles(Arrays.asList(Integer.valueOf(3)));
+		processor.setReadWriteRoles(Arrays.asList(Integer.valueOf(4), Integer.valueOf(5)));
+		processor.setBulkLoad(mode.equals("bulk"));
+		processor.setStreaming(mode.equals("stream"));
+
+		for (String identifier : loader.getProjectIdentifiers()) {
+			processor.addExistingRepository(identifier, new File(directory, identifier).getAbsolutePath());
+		}
+
+		// A broken setup must fail the trial, not yield figures
+		generateUserPermissions();
+		checkOutput();
+	}
+
+	@Benchmark
+	public void generateUserPermissions() throws IOException, SQLException {
+		processor.generateUserPermissions();
+
+		// Write errors are swallowed: an iteration that failed to write is not a fast one
+		if (processor.getWriteError() != null) {
+			throw processor.getWriteError();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		processor.close();
+		try {
+			checkOutput();
+		} finally {
+			deleteDirectory();
+		}
+	}
+
+	/**
+	 * @throws IOException if no AuthZ file was written
+	 */
+	private void checkOutput() throws IOException {
+		if (!output.isFile() || output.length() == 0) {
+			throw new IOException("AuthZ file not written: " + output.getPath());
+		}
+	}
+
+	/**
+	 * Deletes the temporary directory holding the AuthZ file
+	 */
+	private void deleteDirectory() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * File name: RolePrivilegeBenchmark.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * JMH benchmark of the role to repository rights resolution
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.tentech.redmag.bench.SyntheticDataLoader;
+
+/**
+ * <P>Measures <code>getRolePriviledge()</code> over the role IDs of a synthetic
+ * dataset. The role is resolved once per membership row, so this is the inner
+ * loop of the AuthZ generation.</P>
+ *
+ * @author veilleux
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RolePrivilegeBenchmark {
+	/** Number of membership rows */
+	@Param({"100", "10000", "1000000"})
+	public int rows;
+
+	private String[] projects;
+	private int[] roleIds;
+	private SvnReposAccessProcessor processor;
+
+	@Setup
+	public void setUp() {
+		SyntheticDataLoader loader = new SyntheticDataLoader(rows, GenerateUserPermissionsBenchmark.SEED);
+		roleIds = loader.getRoleIds();
+
+		// Project of each row, rows being spread evenly over the projects
+		String[] identifiers = loader.getProjectIdentifiers().toArray(new String[0]);
+		projects = new String[rows];
+		for (int row = 0; row < rows; row++) {
+			projects[row] = identifiers[(int) ((long) row * identifiers.length / rows)];
+		}
+
+		processor = new SvnReposAccessProcessor();
+		processor.setReadRoles(Arrays.asList(Integer.valueOf(3)));
+		processor.setReadWriteRoles(Arrays.asList(Integer.valueOf(4), Integer.valueOf(5)));
+	}
+
+	/**
+	 * @return the number of rows granting some access, so that no call is eliminated
+	 */
+	@Benchmark
+	public int getRolePriviledge() {
+		int granted = 0;
+		for (int row = 0; row < roleIds.length; row++) {
+			if (processor.getRolePriviledge(projects[row], roleIds[row]) != SvnReposAccessProcessor.ReposRights.NONE) {
+				granted++;
+			}
+		}
+
+		return granted;
+	}
+}
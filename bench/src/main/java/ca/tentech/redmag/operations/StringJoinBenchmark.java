@@ -0,0 +1,105 @@
+/**
+ * File name: StringJoinBenchmark.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * JMH benchmark of the group member list formatting
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.tentech.redmag.bench.SyntheticDataLoader;
+
+/**
+ * <P>Measures <code>stringJoin()</code> and the canonical member list of
+ * <code>AuthzFormatter</code> on the logins of a synthetic dataset. The
+ * logins are cut into groups of the size of a project, as written in the
+ * <code>[groups]</code> section.</P>
+ *
+ * @author veilleux
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringJoinBenchmark {
+	/** Number of membership rows */
+	@Param({"100", "10000", "1000000"})
+	public int rows;
+
+	private List<List<String>> groups;
+
+	@Setup
+	public void setUp() {
+		List<String> logins = new SyntheticDataLoader(rows, GenerateUserPermissionsBenchmark.SEED).getLogins();
+
+		groups = new ArrayList<List<String>>();
+		for (int start = 0; start < logins.size(); start += SyntheticDataLoader.MEMBERS_PER_PROJECT) {
+			int end = Math.min(logins.size(), start + SyntheticDataLoader.MEMBERS_PER_PROJECT);
+			groups.add(new ArrayList<String>(logins.subList(start, end)));
+		}
+	}
+
+	/**
+	 * @return the total length of the member lists, so that no call is eliminated
+	 */
+	@Benchmark
+	public long stringJoin() {
+		long length = 0;
+		for (List<String> group : groups) {
+			length += SvnReposAccessProcessor.stringJoin(group, ", ").length();
+		}
+
+		return length;
+	}
+
+	/**
+	 * @return the total length of the member lists, so that no call is eliminated
+	 */
+	@Benchmark
+	public long formatMembers() {
+		long length = 0;
+		for (List<String> group : groups) {
+			length += AuthzFormatter.formatMembers(group).length();
+		}
+
+		return length;
+	}
+}
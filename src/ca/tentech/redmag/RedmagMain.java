@@ -42,11 +42,16 @@
  */
 package ca.tentech.redmag;
 
+import java.io.File;
 import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
 
+import ca.tentech.redmag.db.ConnectionPool;
+import ca.tentech.redmag.operations.AuthzWriter;
+import ca.tentech.redmag.operations.ReposCreationResult;
 import ca.tentech.redmag.operations.SvnReposAccessProcessor;
+import ca.tentech.redmag.svn.MicroSvnReposAdmin;
 
 import com.Ostermiller.util.CmdLn;
 import com.Ostermiller.util.CmdLnException;
@@ -71,6 +76,9 @@ public class RedmagMain {
 	
 	private static final int DEFAULT_DATABASE_PORT = 3306;
 	private static final String DEFAULT_DATABASE_HOST = "localhost";
+	private static final long DEFAULT_DAEMON_INTERVAL = 300;
+	/** In daemon mode, pooled connections are closed after this many idle intervals */
+	private static final long DAEMON_IDLE_TIMEOUT_FACTOR = 2;
 	
 	/**
 	 * Main entrypoint for Redmag command-line operation
@@ -83,6 +91,21 @@ public class RedmagMain {
 		List<Integer> readWriteRoles = new LinkedList<Integer>();
 		boolean createMissingRepos = false;
 		boolean verbose = false;
+		boolean bulkLoad = false;
+		boolean streaming = false;
+		boolean deepVerify = false;
+		int jobs = Runtime.getRuntime().availableProcessors();
+		int createJobs = SvnReposAccessProcessor.DEFAULT_CREATION_THREADS;
+		boolean templateCreate = false;
+		long svnadminTimeout = 0;
+		boolean daemon = false;
+		boolean incremental = false;
+		int fullScanInterval = SvnReposAccessProcessor.DEFAULT_FULL_SCAN_INTERVAL;
+		boolean dedupGroups = false;
+		boolean splitLayout = false;
+		boolean compactSections = false;
+		String rulesFilename = AuthzWriter.DEFAULT_RULES_FILENAME;
+		long daemonInterval = DEFAULT_DAEMON_INTERVAL;
 		String outputFilename = "/svn/access.authZ";
 		String svnRoot = "/svn";
 		SvnReposAccessProcessor processor = null;
@@ -97,12 +120,31 @@ public class RedmagMain {
         	new CmdLnOption("dbname",'d').setRequiredArgument().setDescription("Redmine database name"),
         	new CmdLnOption("dbhost",'i').setRequiredArgument().setDescription("Redmine database host (default: localhost)"),
         	new CmdLnOption("port").setRequiredArgument().setDescription("Redmine database port"),
+        	new CmdLnOption("db-pool-size").setRequiredArgument().setDescription("Maximum number of pooled database connections (default: 4)"),
         	new CmdLnOption("verbose",'v').setDescription("be verbose"),
         	new CmdLnOption("list-roles",'l').setDescription("list available user roles"),
         	new CmdLnOption("output-file").setRequiredArgument().setDescription("filename (default:/svn/access.authZ)"),
         	new CmdLnOption("read-roles").setRequiredArgument().setDescription("Provide list of roleIds that can read SVN: roleId1,roleId2,.."),
         	new CmdLnOption("rw-roles").setRequiredArgument().setDescription("Provide list of roleIds that can read and write SVN: roleId1,roleId2,.."),
-            new CmdLnOption("create-missing-repos",'c').setDescription("Create missing project repositories")
+            new CmdLnOption("create-missing-repos",'c').setDescription("Create missing project repositories"),
+            new CmdLnOption("bulk-load",'b').setDescription("Load all project members in a single query"),
+            new CmdLnOption("stream").setDescription("Write the AuthZ file while reading project members (constant memory)"),
+            new CmdLnOption("deep-verify").setDescription("Verify every revision of existing repositories with svnadmin (slow)"),
+            new CmdLnOption("jobs",'j').setRequiredArgument().setDescription("Maximum number of repositories validated concurrently (default: number of CPU cores)"),
+            new CmdLnOption("create-jobs").setRequiredArgument().setDescription("Maximum number of repositories created concurrently per volume (default: 2)"),
+            new CmdLnOption("template-create").setDescription("Create repositories by copying a template repository kept in the SVN root"),
+            new CmdLnOption("svnadmin-timeout").setRequiredArgument().setDescription("Kill svnadmin processes running longer than this many seconds (default: no limit)"),
+            new CmdLnOption("svnadmin").setRequiredArgument().setDescription("Location of the svnadmin binary (default: looked up in the PATH)"),
+            new CmdLnOption("daemon").setDescription("Keep running and synchronize periodically"),
+            new CmdLnOption("interval").setRequiredArgument().setDescription("Seconds between synchronizations in daemon mode (default: 300)"),
+            new CmdLnOption("incremental").setDescription("Only read projects changed since the last successful synchronization"),
+            new CmdLnOption("full-scan-interval").setRequiredArgument().setDescription("Incremental synchronizations between two scans of all memberships, which find role changes (default: 1, every synchronization)"),
+            new CmdLnOption("dedup-groups").setDescription("Share a single AuthZ group between projects with the same members (not with --split-layout)"),
+            new CmdLnOption("split-layout").setDescription("Write only groups to the output file, and rules to a file in each repository"),
+            new CmdLnOption("compact-sections").setDescription("Remove redundant repository sections, verifying the permissions are unchanged"),
+            new CmdLnOption("rules-file").setRequiredArgument().setDescription("Rules file of each repository in split layout, relative to the repository (default: conf/authz)"),
+            new CmdLnOption("snapshot").setRequiredArgument().setDescription("Read Redmine data from a snapshot file instead of the database"),
+            new CmdLnOption("save-snapshot").setRequiredArgument().setDescription("Save the Redmine data to a snapshot file (gzip if named *.gz) and exit")
         });
         
         // Try to parse options
@@ -126,20 +168,30 @@ public class RedmagMain {
 				verbose = true;
 			}
 			
+			String snapshotFilename = null;
+			if (parser.present("snapshot")) {
+				snapshotFilename = parser.getResult("snapshot").getArgument();
+				if (!new File(snapshotFilename).isFile()) {
+					System.out.println("ERROR: Snapshot file not found: \"" + snapshotFilename + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			// Database settings are not needed when replaying a snapshot
 			String username = "";
-			if (!parser.present("user")) {
+			if (parser.present("user")) {
+				username = parser.getResult("user").getArgument();
+			} else if (snapshotFilename == null) {
 				System.out.println("ERROR: Redmine database user name required !\n");
 				throw new IllegalArgumentException();
-			} else {
-				username = parser.getResult("user").getArgument();
 			}
 
 			String dbName = "";
-			if (!parser.present("dbname")) {
+			if (parser.present("dbname")) {
+				dbName = parser.getResult("dbname").getArgument();
+			} else if (snapshotFilename == null) {
 				System.out.println("ERROR: Redmine database name required !\n");
 				throw new IllegalArgumentException();
-			} else {
-				dbName = parser.getResult("dbname").getArgument();
 			}
 			
 			String dbHost = DEFAULT_DATABASE_HOST;
@@ -162,11 +214,29 @@ public class RedmagMain {
 				}
 			}
 			
+			int dbPoolSize = ConnectionPool.DEFAULT_MAX_SIZE;
+			if (parser.present("db-pool-size")) {
+				try {
+					dbPoolSize = Integer.parseInt(parser.getResult("db-pool-size").getArgument());
+				} catch (NumberFormatException e) {
+					dbPoolSize = 0;
+				}
+				
+				if (dbPoolSize < 1) {
+					System.out.println("ERROR: Bad database pool size: \"" + parser.getResult("db-pool-size").getArgument() + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
 			// Build database URL from gathered data
 			String dbUrl = "";
 			dbUrl = String.format("jdbc:mysql://%s:%d/%s", dbHost, dbPort, dbName);
 			if (verbose) {
-				System.out.println("*** Using database URL: " + dbUrl);
+				if (snapshotFilename != null) {
+					System.out.println("*** Using snapshot file: " + snapshotFilename);
+				} else {
+					System.out.println("*** Using database URL: " + dbUrl);
+				}
 			}
 			
 			// Initialize processor (Part 1: Database access) 
@@ -174,6 +244,8 @@ public class RedmagMain {
 			processor.setUsername(username);
 			processor.setPassword(password);
 			processor.setDbUrl(dbUrl);
+			processor.setDbPoolSize(dbPoolSize);
+			processor.setSnapshotFilename(snapshotFilename);
 			
 			// Handle listing roles through the command line
 			if (parser.present("list-roles")) {
@@ -191,6 +263,26 @@ public class RedmagMain {
 				System.exit(OK_EXITCODE);
 			}
 			
+			// Handle snapshot capture through the command line
+			if (parser.present("save-snapshot")) {
+				String filename = parser.getResult("save-snapshot").getArgument();
+				int count = 0;
+				
+				try {
+					count = processor.saveSnapshot(filename);
+				} catch (SQLException e1) {
+					System.err.println("ERROR: Database Access Error: " + e1.toString());
+					processor.close();
+					System.exit(DB_ERROR_EXITCODE);
+				}
+				
+				if (verbose) {
+					System.out.printf("*** Saved %d memberships to snapshot %s\n", count, filename);
+				}
+				processor.close();
+				System.exit(OK_EXITCODE);
+			}
+			
 			if (parser.present("svn-root")) {
 				svnRoot = parser.getResult("svn-root").getArgument();
 			}
@@ -242,6 +334,127 @@ public class RedmagMain {
 				createMissingRepos = true;
 			}
 			
+			if (parser.present("bulk-load")) {
+				bulkLoad = true;
+			}
+			
+			if (parser.present("stream")) {
+				streaming = true;
+			}
+			
+			if (parser.present("deep-verify")) {
+				deepVerify = true;
+			}
+			
+			if (parser.present("jobs")) {
+				try {
+					jobs = Integer.parseInt(parser.getResult("jobs").getArgument());
+				} catch (NumberFormatException e) {
+					jobs = 0;
+				}
+				
+				if (jobs < 1) {
+					System.out.println("ERROR: Bad number of jobs: \"" + parser.getResult("jobs").getArgument() + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			if (parser.present("create-jobs")) {
+				try {
+					createJobs = Integer.parseInt(parser.getResult("create-jobs").getArgument());
+				} catch (NumberFormatException e) {
+					createJobs = 0;
+				}
+				
+				if (createJobs < 1) {
+					System.out.println("ERROR: Bad number of creation jobs: \"" + parser.getResult("create-jobs").getArgument() + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			if (parser.present("template-create")) {
+				templateCreate = true;
+			}
+			
+			if (parser.present("svnadmin-timeout")) {
+				try {
+					svnadminTimeout = Long.parseLong(parser.getResult("svnadmin-timeout").getArgument());
+				} catch (NumberFormatException e) {
+					svnadminTimeout = -1;
+				}
+				
+				if (svnadminTimeout < 0) {
+					System.out.println("ERROR: Bad svnadmin timeout: \"" + parser.getResult("svnadmin-timeout").getArgument() + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			if (parser.present("svnadmin")) {
+				MicroSvnReposAdmin.setSvnadminPath(parser.getResult("svnadmin").getArgument());
+			}
+			
+			if (parser.present("daemon")) {
+				daemon = true;
+			}
+			
+			if (parser.present("interval")) {
+				try {
+					daemonInterval = Long.parseLong(parser.getResult("interval").getArgument());
+				} catch (NumberFormatException e) {
+					daemonInterval = 0;
+				}
+				
+				if (daemonInterval < 1) {
+					System.out.println("ERROR: Bad daemon interval: \"" + parser.getResult("interval").getArgument() + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			if (parser.present("incremental")) {
+				incremental = true;
+			}
+			
+			if (parser.present("full-scan-interval")) {
+				try {
+					fullScanInterval = Integer.parseInt(parser.getResult("full-scan-interval").getArgument());
+				} catch (NumberFormatException e) {
+					fullScanInterval = 0;
+				}
+				
+				if (fullScanInterval < 1) {
+					System.out.println("ERROR: Bad full scan interval: \"" + parser.getResult("full-scan-interval").getArgument() + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			if (parser.present("dedup-groups")) {
+				dedupGroups = true;
+			}
+			
+			if (parser.present("split-layout")) {
+				if (dedupGroups) {
+					System.out.println("ERROR: Group deduplication does not apply to the split layout !\n");
+					throw new IllegalArgumentException();
+				}
+				splitLayout = true;
+			}
+			
+			if (parser.present("compact-sections")) {
+				if (splitLayout) {
+					System.out.println("ERROR: Section compaction does not apply to the split layout !\n");
+					throw new IllegalArgumentException();
+				}
+				compactSections = true;
+			}
+			
+			if (parser.present("rules-file")) {
+				rulesFilename = parser.getResult("rules-file").getArgument();
+				if (rulesFilename.length() == 0 || new File(rulesFilename).isAbsolute()) {
+					System.out.println("ERROR: Rules file must be a path relative to the repository !\n");
+					throw new IllegalArgumentException();
+				}
+			}
+			
 			if (parser.present("output-file")) {
 				outputFilename = parser.getResult("output-file").getArgument();
 			}
@@ -253,22 +466,105 @@ public class RedmagMain {
         
         // Initialize processor (Part 2: Other options)
         processor.setVerbose(verbose);
+        processor.setBulkLoad(bulkLoad);
+        processor.setStreaming(streaming);
+        processor.setDeepVerify(deepVerify);
+        processor.setValidationThreads(jobs);
+        processor.setCreationThreads(createJobs);
+        processor.setTemplateCreation(templateCreate);
+        processor.setIncremental(incremental);
+        processor.setFullScanInterval(fullScanInterval);
+        processor.setDedupGroups(dedupGroups);
+        processor.setSplitLayout(splitLayout);
+        processor.setCompactSections(compactSections);
+        processor.setRulesFilename(rulesFilename);
+        MicroSvnReposAdmin.setMaxConcurrentProcesses(jobs);
+        MicroSvnReposAdmin.setProcessTimeout(svnadminTimeout * 1000);
         processor.setOutputFilename(outputFilename);
         processor.setReadRoles(readRoles);
         processor.setReadWriteRoles(readWriteRoles);
         processor.setSvnRoot(svnRoot);
         
         // Run necessary operations
+        if (daemon) {
+        	// Idle connections must outlive the sleep between cycles to be reused
+        	processor.setDbIdleTimeout(daemonInterval * 1000 * DAEMON_IDLE_TIMEOUT_FACTOR);
+        	runDaemon(processor, createMissingRepos, daemonInterval, verbose);
+        	processor.close();
+        	System.exit(OK_EXITCODE);
+        }
+        
         try {
-	        processor.checkExistingRepositories();
-	        if (createMissingRepos) {
-	        	processor.createMissingRepositories();
-	        }
-	        processor.generateUserPermissions();
+	        reportCreationFailures(processor.runSyncCycle(createMissingRepos));
+	        processor.close();
 	        System.exit(OK_EXITCODE);
         } catch (SQLException e1) {
         	System.out.println("ERROR: Database Access Error: " + e1.toString());
+        	processor.close();
         	System.exit(DB_ERROR_EXITCODE);
         }	
 	}
+	
+	/**
+	 * Runs sync cycles forever, every <code>interval</code> seconds. The processor
+	 * and its database connections, validation cache and loaded state are kept
+	 * across cycles: the processor must close idle connections only after more
+	 * than <code>interval</code> seconds. A failed cycle is reported and retried
+	 * on the next interval.
+	 * 
+	 * @param processor - fully configured processor
+	 * @param createMissingRepos - whether to create missing repositories
+	 * @param interval - time between the start of two cycles, in seconds
+	 * @param verbose - whether to report the duration of each cycle
+	 */
+	private static void runDaemon(final SvnReposAccessProcessor processor, boolean createMissingRepos,
+			long interval, boolean verbose) {
+		// Release database connections on termination (SIGTERM, Ctrl-C)
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				processor.close();
+			}
+		});
+		
+		while (true) {
+			long start = System.currentTimeMillis();
+			
+			try {
+				reportCreationFailures(processor.runSyncCycle(createMissingRepos));
+			} catch (SQLException e1) {
+				System.out.println("ERROR: Database Access Error: " + e1.toString());
+			} catch (RuntimeException e1) {
+				System.out.println("ERROR: Sync cycle failed: " + e1.toString());
+			}
+			
+			long elapsed = System.currentTimeMillis() - start;
+			if (verbose) {
+				System.out.printf("*** Sync cycle completed in %d ms\n", elapsed);
+			}
+			
+			try {
+				Thread.sleep(Math.max(0, interval * 1000 - elapsed));
+			} catch (InterruptedException e1) {
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Prints the number of repositories that could not be created, if any.
+	 * 
+	 * @param results - outcome of each repository creation
+	 */
+	private static void reportCreationFailures(List<ReposCreationResult> results) {
+		int failures = 0;
+		for (ReposCreationResult result : results) {
+			if (!result.isSuccess()) {
+				failures++;
+			}
+		}
+		
+		if (failures > 0) {
+			System.out.printf("ERROR: %d repositories could not be created (use -v for details)\n", failures);
+		}
+	}
 }
@@ -0,0 +1,286 @@
+/**
+ * File name: ConnectionPool.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Minimal JDBC connection pool used by the Redmine database querying class
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * <P>Small fixed-size JDBC connection pool. Connections are opened lazily
+ * up to <code>maxSize</code>, validated when borrowed and closed once they
+ * stay idle longer than <code>idleTimeout</code> milliseconds.</P>
+ *
+ * <P>Every connection obtained through <code>getConnection()</code> MUST be
+ * given back through <code>release()</code>, preferably in a finally block.</P>
+ *
+ * @author veilleux
+ */
+public class ConnectionPool {
+	/** Default maximum number of open connections */
+	public static final int DEFAULT_MAX_SIZE = 4;
+	/** Default time after which an idle connection is closed (ms) */
+	public static final long DEFAULT_IDLE_TIMEOUT = 60000L;
+
+	/** Connector/J turns a query starting with this comment into a light-weight ping */
+	private static final String VALIDATION_QUERY = "/* ping */ SELECT 1";
+
+	/** URL of MySQL database */
+	private String dbUrl;
+	/** User name to access redmine DB */
+	private String username;
+	/** Password to access redmine DB */
+	private String password;
+	/** Maximum number of connections opened at the same time */
+	private int maxSize;
+	/** Time after which an idle connection is closed (ms) */
+	private long idleTimeout;
+
+	/** Idle connections, most recently released first */
+	private LinkedList<IdleConnection> idle = new LinkedList<IdleConnection>();
+	/** Number of connections currently open (idle and leased) */
+	private int openCount = 0;
+	/** Whether close() was called */
+	private boolean closed = false;
+
+	/**
+	 * Idle connection along with the time it was given back to the pool
+	 */
+	private static class IdleConnection {
+		private Connection connection;
+		private long releasedOn;
+
+		public IdleConnection(Connection connection, long releasedOn) {
+			this.connection = connection;
+			this.releasedOn = releasedOn;
+		}
+	}
+
+	/**
+	 * Initialize the pool with database information. No connection is opened
+	 * until the first call to <code>getConnection()</code>.
+	 *
+	 * @param dbUrl - JDBC URL of database
+	 * @param username - User name to use for connection
+	 * @param password - Password to use for connection
+	 * @param maxSize - Maximum number of connections opened at the same time
+	 * @param idleTimeout - Time after which an idle connection is closed (ms)
+	 */
+	public ConnectionPool(String dbUrl, String username, String password, int maxSize, long idleTimeout) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Connection pool size must be at least 1: " + maxSize);
+		}
+
+		this.dbUrl = dbUrl;
+		this.username = username;
+		this.password = password;
+		this.maxSize = maxSize;
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Leases a connection from the pool. An idle connection is reused if it is
+	 * still valid, otherwise a new one is opened. If <code>maxSize</code> connections
+	 * are already leased, waits until one is released.
+	 *
+	 * @return an open connection, to give back through <code>release()</code>
+	 * @throws SQLException on connection error or if the pool is closed
+	 */
+	public Connection getConnection() throws SQLException {
+		while (true) {
+			Connection candidate = null;
+
+			synchronized (this) {
+				evictIdle();
+
+				while (idle.isEmpty() && openCount >= maxSize && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SQLException("Interrupted while waiting for a database connection");
+					}
+				}
+
+				if (closed) {
+					throw new SQLException("Connection pool is closed");
+				}
+
+				if (!idle.isEmpty()) {
+					candidate = idle.removeFirst().connection;
+				} else {
+					// Reserve the slot before connecting outside of the lock
+					openCount++;
+				}
+			}
+
+			if (candidate == null) {
+				try {
+					return DriverManager.getConnection(dbUrl, username, password);
+				} catch (SQLException e) {
+					discarded();
+					throw e;
+				}
+			}
+
+			// Validate on borrow: a broken connection is dropped and we try again
+			if (isValid(candidate)) {
+				return candidate;
+			}
+
+			closeQuietly(candidate);
+			discarded();
+		}
+	}
+
+	/**
+	 * Gives a connection back to the pool. Closed connections are simply
+	 * forgotten. Passing <code>null</code> is allowed and does nothing.
+	 *
+	 * @param c - connection obtained through <code>getConnection()</code>
+	 */
+	public void release(Connection c) {
+		if (c == null) {
+			return;
+		}
+
+		boolean reusable;
+		try {
+			reusable = !c.isClosed();
+			if (reusable && !c.getAutoCommit()) {
+				c.rollback();
+				c.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			reusable = false;
+		}
+
+		synchronized (this) {
+			if (reusable && !closed) {
+				idle.addFirst(new IdleConnection(c, System.currentTimeMillis()));
+				notifyAll();
+				return;
+			}
+		}
+
+		closeQuietly(c);
+		discarded();
+	}
+
+	/**
+	 * Closes all idle connections and refuses further leases. Leased
+	 * connections are closed as they are released.
+	 */
+	public void close() {
+		LinkedList<IdleConnection> toClose;
+
+		synchronized (this) {
+			closed = true;
+			toClose = idle;
+			idle = new LinkedList<IdleConnection>();
+			openCount -= toClose.size();
+			notifyAll();
+		}
+
+		for (IdleConnection ic : toClose) {
+			closeQuietly(ic.connection);
+		}
+	}
+
+	/**
+	 * Closes idle connections that exceeded the idle timeout. MUST be called
+	 * while holding the pool lock.
+	 */
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+
+		Iterator<IdleConnection> it = idle.iterator();
+		while (it.hasNext()) {
+			IdleConnection ic = it.next();
+			if (now - ic.releasedOn > idleTimeout) {
+				it.remove();
+				openCount--;
+				closeQuietly(ic.connection);
+			}
+		}
+	}
+
+	/**
+	 * Frees the slot of a connection that was closed or could not be opened
+	 */
+	private synchronized void discarded() {
+		openCount--;
+		notifyAll();
+	}
+
+	/**
+	 * Checks that a pooled connection is still usable by running the
+	 * validation query on it.
+	 *
+	 * @param c - connection to validate
+	 * @return true if the connection answered the validation query
+	 */
+	private static boolean isValid(Connection c) {
+		Statement statement = null;
+		try {
+			if (c.isClosed()) {
+				return false;
+			}
+
+			statement = c.createStatement();
+			statement.execute(VALIDATION_QUERY);
+			return true;
+		} catch (SQLException e) {
+			return false;
+		} finally {
+			if (statement != null) {
+				try {
+					statement.close();
+				} catch (SQLException e) {
+					// Nothing to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Closes a connection, ignoring errors
+	 *
+	 * @param c - connection to close
+	 */
+	private static void closeQuietly(Connection c) {
+		try {
+			c.close();
+		} catch (SQLException e) {
+			// Nothing to do: connection is being discarded anyway
+		}
+	}
+}
@@ -0,0 +1,834 @@
+/**
+ * File name: JdbcRedmineDataLoader.java
+ * Date: 2009-06-19
+ * Time: 15:16:05
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Redmine database querying class
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <P>This class executes different queries on the Redmine database
+ * through the MySQL JDBC connector. It was developped using
+ * Redmine 0.8.3 tables and does not rely on separate views.</P>
+ * 
+ * <P>Each function does an independant query through a connection leased
+ * from an internal connection pool, so that connection setup is only paid once
+ * per pooled connection. Call <code>close()</code> once the loader is no
+ * longer needed.</p>
+ * <P>SQL Tutorial consulted: http://www.aavso.org/aavso/meetings/spring09/sql_intro.pdf</P>
+ * 
+ * TODO: Adapt to specialized views and other connectors
+ * TODO: User-based exceptions
+ * TODO: Path-based exceptions- Path-based removal from main blanketing to add individually
+ * TODO: Additionnal field for whether a user wants commit e-mails or not
+ * TODO: Mail hook generator
+ * TODO: User watch for last login (warnings)
+ * TODO: User bulk add
+ * TODO: Parent-child repos names
+ * TODO: Post-commit hook extra script
+ * TODO: Mass system message by project
+ * @author veilleux
+ * 
+ */
+public class JdbcRedmineDataLoader implements RedmineDataLoader {
+	/** Maximum number of identifiers in a single "IN (...)" clause */
+	private static final int IN_CLAUSE_BATCH_SIZE = 500;
+	/** Membership fingerprint of each project, to complete with a GROUP BY clause */
+	private static final String FINGERPRINT_QUERY = "SELECT p.identifier, COUNT(m.id)," +
+			" COALESCE(SUM(m.id), 0), COALESCE(BIT_XOR(CRC32(CONCAT_WS(':', m.id, m.user_id, m.role_id))), 0)" +
+			" FROM projects p LEFT JOIN members m ON m.project_id=p.id";
+	
+	/** URL of MySQL database */
+	private String dbUrl;
+	/** User name to access redmine DB */
+	private String username;
+	/** Password to access redmine DB */
+	private String password;
+	/** Pool of connections to the redmine DB */
+	private ConnectionPool pool;
+
+	/**
+	 * Initialize the query class with database information, using a
+	 * connection pool of default size.
+	 * 
+	 * @param dbUrl - JDBC URL of database
+	 * @param username - User name to use for connection
+	 * @param password - Password to use for connection
+	 * @throws SQLException on initialization error
+	 */
+	public JdbcRedmineDataLoader(String dbUrl, String username, String password) throws SQLException {
+		this(dbUrl, username, password, ConnectionPool.DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Initialize the query class with database information.
+	 * 
+	 * @param dbUrl - JDBC URL of database
+	 * @param username - User name to use for connection
+	 * @param password - Password to use for connection
+	 * @param poolSize - Maximum number of pooled connections to the database
+	 * @throws SQLException on initialization error
+	 */
+	public JdbcRedmineDataLoader(String dbUrl, String username, String password, int poolSize) throws SQLException {
+		this(dbUrl, username, password, poolSize, ConnectionPool.DEFAULT_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * Initialize the query class with database information.
+	 * 
+	 * @param dbUrl - JDBC URL of database
+	 * @param username - User name to use for connection
+	 * @param password - Password to use for connection
+	 * @param poolSize - Maximum number of pooled connections to the database
+	 * @param idleTimeout - Time after which an idle pooled connection is closed (ms)
+	 * @throws SQLException on initialization error
+	 */
+	public JdbcRedmineDataLoader(String dbUrl, String username, String password, int poolSize, long idleTimeout) throws SQLException {
+		this.dbUrl = dbUrl;
+		this.username = username;
+		this.password = password;
+
+		// Register the JDBC driver for MySQL.
+		try {
+			Class.forName("com.mysql.jdbc.Driver");
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+			
+			// Rethrow exception to ensure no calls are made on badly initialized JDBC driver
+			throw new SQLException(e);
+		}
+		
+		pool = new ConnectionPool(this.dbUrl, this.username, this.password,
+				poolSize, idleTimeout);
+	}
+	
+	/**
+	 * Closes all pooled database connections. The loader cannot be used afterwards.
+	 */
+	public void close() {
+		pool.close();
+	}
+	
+	/**
+	 * Creates a forward-only, read-only statement whose result sets are
+	 * streamed row by row by Connector/J instead of being fully buffered
+	 * in memory before the first row is read.
+	 * 
+	 * <P>While a streamed result set is open, no other query may be issued
+	 * on the same connection.</P>
+	 * 
+	 * @param c - connection on which to create the statement
+	 * @return a streaming statement
+	 * @throws SQLException on database access error
+	 */
+	private static Statement createStreamingStatement(Connection c) throws SQLException {
+		Statement statement = c.createStatement(
+				ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(Integer.MIN_VALUE);
+		
+		return statement;
+	}
+	
+	/**
+	 * Closes a statement (and its result set), ignoring errors.
+	 * 
+	 * @param statement - statement to close, may be null
+	 */
+	private static void closeStatement(Statement statement) {
+		if (statement != null) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				// Nothing to do: the connection goes back to the pool anyway
+			}
+		}
+	}
+
+	/**
+	 * Queries all existing roles, keyed by ID.
+	 * 
+	 * @return a map of human-readble role names, keyed by ID
+	 * @throws SQLException on database access error 
+	 */
+	public HashMap<Integer, String> getRoleList() throws SQLException {
+		HashMap<Integer, String> result = new HashMap<Integer, String>();
+		
+		Connection c = null;
+		Statement statement = null;
+		try {
+			ResultSet resultSet;
+
+			// Lease connection to database
+			c = pool.getConnection();
+
+			// Query DB for roles
+			statement = c.createStatement(
+					ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			resultSet = statement.executeQuery("SELECT id, name FROM roles;");
+
+			while (resultSet.next()) {
+				result.put(resultSet.getInt("id"), resultSet.getString("name"));
+			}
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+		
+		return result;
+	}
+
+	/**
+	 * Queries the project list and returns project instances. The 
+	 * RedmineProject class is a subset of the project table.
+	 * 
+	 * @return a list of RedmineProject instances
+	 * @throws SQLException on database access error 
+	 */
+	public List<RedmineProject> getProjectList() throws SQLException {
+		final LinkedList<RedmineProject> result = new LinkedList<RedmineProject>();
+		
+		streamProjectList(new RedmineProjectHandler() {
+			public void handleProject(RedmineProject project) {
+				result.add(project);
+			}
+		});
+		
+		return result;
+	}
+
+	/**
+	 * Queries the project list and hands each project to <code>handler</code>
+	 * as its row is read. Rows are streamed from the server through a
+	 * forward-only cursor, so they are never all held in memory.
+	 * 
+	 * @param handler - callback receiving each project, in table order
+	 * @throws SQLException on database access error, or if the handler fails
+	 */
+	public void streamProjectList(RedmineProjectHandler handler) throws SQLException {
+		Connection c = null;
+		Statement statement = null;
+		try {
+			ResultSet resultSet;
+
+			// Lease connection to database
+			c = pool.getConnection();
+
+			// Query DB for projects
+			statement = createStreamingStatement(c);
+			resultSet = statement.executeQuery("SELECT identifier, name, description, parent_id, updated_on FROM projects;");
+
+			// Hand out project rows as they arrive
+			while (resultSet.next()) {
+				String identifier = resultSet.getString("identifier");
+				String name = resultSet.getString("name");
+				String description = resultSet.getString("description");
+				boolean isSubproject = resultSet.getInt("parent_id") > 0;
+				Date lastUpdated = resultSet.getDate("updated_on");
+				
+				handler.handleProject(new RedmineProject(identifier, name, description, isSubproject, lastUpdated));
+			}
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+	}
+
+	/**
+	 * Returns a subset of Redmine project members by joining members, users
+	 * and projects. The <code>projectIdentifier</code> is the project for
+	 * which to gather users. In the case of <code>projectIdentifier == ""</code>,
+	 * all members of all projects are retrieved.
+	 *  
+	 * @param projectIdentifier - Project table "identifier" to select from. If
+	 * empty, members of all projects are queried.
+	 * 
+	 * @return a list of RedmineProjectMember instances
+	 * @throws SQLException on database access error
+	 */
+	public List<RedmineProjectMember> gatherUsersByProject(String projectIdentifier) throws SQLException {
+		final List<RedmineProjectMember> result = new LinkedList<RedmineProjectMember>();
+		
+		streamUsersByProject(projectIdentifier, new RedmineMemberHandler() {
+			public void handleMember(RedmineProjectMember member) {
+				result.add(member);
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Streaming version of <code>gatherUsersByProject()</code>: each project
+	 * member is handed to <code>handler</code> as its row is read from a
+	 * forward-only cursor, instead of being collected in a list. Peak memory
+	 * does not depend on the size of the members table.
+	 * 
+	 * <P>Members are handed out ordered by project identifier, then role ID.
+	 * Identifiers are compared byte by byte, like <code>String.compareTo()</code>
+	 * does for ASCII identifiers, not with the collation of the column.</P>
+	 *  
+	 * @param projectIdentifier - Project table "identifier" to select from. If
+	 * empty, members of all projects are queried.
+	 * @param handler - callback receiving each project member
+	 * @throws SQLException on database access error, or if the handler fails
+	 */
+	public void streamUsersByProject(String projectIdentifier, RedmineMemberHandler handler) throws SQLException {
+		Connection c = null;
+		Statement statement = null;
+		try {
+			ResultSet resultSet;
+
+			// Lease connection to database
+			c = pool.getConnection();
+
+			// Query DB for members, joining with projects and users
+			// Check to see if we are asking for a specific project
+			if (!projectIdentifier.equals("")) {
+				PreparedStatement ps = c.prepareStatement("SELECT p.identifier, u.login," +
+						" u.firstname, u.lastname, u.mail, u.admin, u.last_login_on,"+
+						" m.role_id FROM members m, projects p, users u WHERE"+
+						" m.project_id=p.id AND u.id=m.user_id AND p.identifier=?"+
+						" ORDER BY identifier, role_id;",
+						ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
+				statement = ps;
+				ps.setFetchSize(Integer.MIN_VALUE);
+				ps.setString(1, projectIdentifier);
+				resultSet = ps.executeQuery();
+			} else {
+				statement = createStreamingStatement(c);
+				resultSet = statement.executeQuery("SELECT p.identifier, u.login," +
+						" u.firstname, u.lastname, u.mail, u.admin, u.last_login_on,"+
+						" m.role_id FROM members m, projects p, users u WHERE"+
+						" m.project_id=p.id AND u.id=m.user_id ORDER BY BINARY p.identifier, role_id;");
+			}
+
+			// Hand out member rows as they arrive
+			while (resultSet.next()) {
+				String login = resultSet.getString("login");
+				String firstName = resultSet.getString("firstname");
+				String lastName = resultSet.getString("lastname");
+				String mailAddress = resultSet.getString("mail");
+				String projectId = resultSet.getString("identifier");
+				int roleId = resultSet.getInt("role_id");
+				boolean isAdministrator = resultSet.getBoolean("admin");
+				Date lastLoginDate = resultSet.getDate("last_login_on");
+				
+				handler.handleMember(new RedmineProjectMember(login, firstName, lastName, mailAddress, projectId, roleId, isAdministrator, lastLoginDate));
+			}
+		} catch (Exception e1) {
+			e1.printStackTrace();
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+	}
+	
+	/**
+	 * Returns the members of all projects through a single query, grouped
+	 * by project identifier. This replaces one <code>gatherUsersByProject()</code>
+	 * call per project when permissions are generated for every repository.
+	 * 
+	 * @return a map of RedmineProjectMember lists, keyed by project identifier.
+	 * Projects without members are absent from the map.
+	 * @throws SQLException on database access error
+	 */
+	public HashMap<String, List<RedmineProjectMember>> gatherAllUsersByProject() throws SQLException {
+		final HashMap<String, List<RedmineProjectMember>> result = new HashMap<String, List<RedmineProjectMember>>();
+		
+		streamUsersByProject("", new RedmineMemberHandler() {
+			public void handleMember(RedmineProjectMember pm) {
+				List<RedmineProjectMember> members = result.get(pm.getProjectId());
+				if (members == null) {
+					members = new LinkedList<RedmineProjectMember>();
+					result.put(pm.getProjectId(), members);
+				}
+				
+				members.add(pm);
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the memberships of all projects through a single query, grouped
+	 * by project identifier. Only login, project and role are read, see
+	 * <code>streamMemberships()</code>.
+	 * 
+	 * @return a map of RedmineMembership lists, keyed by project identifier.
+	 * Projects without members are absent from the map.
+	 * @throws SQLException on database access error
+	 */
+	public HashMap<String, List<RedmineMembership>> gatherAllMembershipsByProject() throws SQLException {
+		final HashMap<String, List<RedmineMembership>> result = new HashMap<String, List<RedmineMembership>>();
+		
+		streamMemberships("", new RedmineMembershipHandler() {
+			public void handleMembership(RedmineMembership membership) {
+				List<RedmineMembership> memberships = result.get(membership.getProjectId());
+				if (memberships == null) {
+					memberships = new ArrayList<RedmineMembership>();
+					result.put(membership.getProjectId(), memberships);
+				}
+				
+				memberships.add(membership);
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Loads the memberships of all projects into a sealed, dictionary-encoded
+	 * store. Only login, project and role are read, and rows go straight into
+	 * the store columns without an intermediate record.
+	 * 
+	 * @return the memberships of all projects
+	 * @throws SQLException on database access error
+	 */
+	public MembershipStore loadMembershipStore() throws SQLException {
+		MembershipStore store = new MembershipStore();
+		
+		Connection c = null;
+		Statement statement = null;
+		try {
+			// Lease connection to database
+			c = pool.getConnection();
+			
+			// No ORDER BY: the store groups rows by project itself
+			statement = createStreamingStatement(c);
+			ResultSet resultSet = statement.executeQuery("SELECT p.identifier, u.login, m.role_id" +
+					" FROM members m, projects p, users u WHERE"+
+					" m.project_id=p.id AND u.id=m.user_id;");
+			while (resultSet.next()) {
+				store.add(resultSet.getString(1), resultSet.getString(2), resultSet.getInt(3));
+			}
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+		
+		store.seal();
+		return store;
+	}
+	
+	/**
+	 * Returns the memberships of a single project, or of all projects if
+	 * <code>projectIdentifier</code> is empty.
+	 * 
+	 * @param projectIdentifier - Project table "identifier" to select from. If
+	 * empty, memberships of all projects are queried.
+	 * @return a list of RedmineMembership instances
+	 * @throws SQLException on database access error
+	 */
+	public List<RedmineMembership> gatherMemberships(String projectIdentifier) throws SQLException {
+		final List<RedmineMembership> result = new ArrayList<RedmineMembership>();
+		
+		streamMemberships(projectIdentifier, new RedmineMembershipHandler() {
+			public void handleMembership(RedmineMembership membership) {
+				result.add(membership);
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Slim version of <code>streamUsersByProject()</code> for access policy
+	 * generation: only the project identifier, user login and role ID of each
+	 * membership are read. Equal logins and identifiers are handed out as the
+	 * same String instance, so that collected memberships share them.
+	 * 
+	 * <P>Memberships are handed out in the same order as <code>streamUsersByProject()</code>.</P>
+	 * 
+	 * @param projectIdentifier - Project table "identifier" to select from. If
+	 * empty, memberships of all projects are queried.
+	 * @param handler - callback receiving each membership
+	 * @throws SQLException on database access error, or if the handler fails
+	 */
+	public void streamMemberships(String projectIdentifier, RedmineMembershipHandler handler) throws SQLException {
+		Connection c = null;
+		Statement statement = null;
+		try {
+			ResultSet resultSet;
+			
+			// Lease connection to database
+			c = pool.getConnection();
+			
+			if (!projectIdentifier.equals("")) {
+				PreparedStatement ps = c.prepareStatement("SELECT p.identifier, u.login, m.role_id" +
+						" FROM members m, projects p, users u WHERE"+
+						" m.project_id=p.id AND u.id=m.user_id AND p.identifier=?"+
+						" ORDER BY role_id;",
+						ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
+				statement = ps;
+				ps.setFetchSize(Integer.MIN_VALUE);
+				ps.setString(1, projectIdentifier);
+				resultSet = ps.executeQuery();
+			} else {
+				statement = createStreamingStatement(c);
+				resultSet = statement.executeQuery("SELECT p.identifier, u.login, m.role_id" +
+						" FROM members m, projects p, users u WHERE"+
+						" m.project_id=p.id AND u.id=m.user_id ORDER BY BINARY p.identifier, role_id;");
+			}
+			
+			handOutMemberships(resultSet, handler, new HashMap<String, String>());
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+	}
+	
+	/**
+	 * Streams the memberships of a set of projects, like <code>streamMemberships()</code>.
+	 * Identifiers are queried in batches, so that only the given projects are read.
+	 * 
+	 * @param projectIdentifiers - Project table "identifier" values to select from
+	 * @param handler - callback receiving each membership
+	 * @throws SQLException on database access error, or if the handler fails
+	 */
+	public void streamMembershipsByProjects(Collection<String> projectIdentifiers, RedmineMembershipHandler handler) throws SQLException {
+		List<String> identifiers = new ArrayList<String>(projectIdentifiers);
+		HashMap<String, String> dictionary = new HashMap<String, String>();
+		
+		for (int start = 0; start < identifiers.size(); start += IN_CLAUSE_BATCH_SIZE) {
+			List<String> batch = identifiers.subList(start, Math.min(identifiers.size(), start + IN_CLAUSE_BATCH_SIZE));
+			
+			Connection c = null;
+			PreparedStatement statement = null;
+			try {
+				// Lease connection to database
+				c = pool.getConnection();
+				
+				StringBuilder placeholders = new StringBuilder();
+				for (int i = 0; i < batch.size(); i++) {
+					placeholders.append(i == 0 ? "?" : ",?");
+				}
+				
+				statement = c.prepareStatement("SELECT p.identifier, u.login, m.role_id" +
+						" FROM members m, projects p, users u WHERE"+
+						" m.project_id=p.id AND u.id=m.user_id AND p.identifier IN ("+
+						placeholders+") ORDER BY BINARY p.identifier, role_id;",
+						ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY);
+				statement.setFetchSize(Integer.MIN_VALUE);
+				for (int i = 0; i < batch.size(); i++) {
+					statement.setString(i + 1, batch.get(i));
+				}
+				
+				handOutMemberships(statement.executeQuery(), handler, dictionary);
+			} catch (Exception e1) {
+				throw new SQLException(e1);
+			} finally {
+				closeStatement(statement);
+				pool.release(c);
+			}
+		}
+	}
+	
+	/**
+	 * Hands out the rows of a (identifier, login, role_id) result set as they arrive.
+	 * 
+	 * @param resultSet - membership rows
+	 * @param handler - callback receiving each membership
+	 * @param dictionary - canonical instances of the logins and identifiers already read
+	 * @throws SQLException on database access error
+	 * @throws IOException if the handler fails
+	 */
+	private static void handOutMemberships(ResultSet resultSet, RedmineMembershipHandler handler,
+			Map<String, String> dictionary) throws SQLException, IOException {
+		while (resultSet.next()) {
+			String projectId = share(dictionary, resultSet.getString(1));
+			String login = share(dictionary, resultSet.getString(2));
+			
+			handler.handleMembership(new RedmineMembership(login, projectId, resultSet.getInt(3)));
+		}
+	}
+	
+	/**
+	 * Returns the canonical instance of a string from a dictionary, adding it
+	 * if absent. Unlike <code>String.intern()</code>, the dictionary is dropped
+	 * with the query that filled it.
+	 * 
+	 * @param dictionary - canonical instances, keyed by themselves
+	 * @param value - string read from a row
+	 * @return the canonical instance equal to <code>value</code>
+	 */
+	private static String share(Map<String, String> dictionary, String value) {
+		String shared = dictionary.get(value);
+		if (shared == null) {
+			dictionary.put(value, value);
+			shared = value;
+		}
+		
+		return shared;
+	}
+	
+	/**
+	 * Returns the current time of the database server, in UTC like the
+	 * updated_on and created_on columns written by Redmine. Used as watermark for
+	 * incremental synchronization, so that client clock skew does not matter.
+	 * NOW() would be in the session time zone: east of UTC, the watermark would
+	 * run ahead of the stored rows and changes would be missed.
+	 * 
+	 * @return the current database time
+	 * @throws SQLException on database access error
+	 */
+	public Timestamp getDatabaseTime() throws SQLException {
+		Connection c = null;
+		Statement statement = null;
+		try {
+			c = pool.getConnection();
+			statement = c.createStatement();
+			ResultSet resultSet = statement.executeQuery("SELECT UTC_TIMESTAMP();");
+			resultSet.next();
+			
+			return resultSet.getTimestamp(1);
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+	}
+	
+	/**
+	 * Returns the identifiers of the projects that changed since <code>since</code>:
+	 * projects updated, projects that gained a member, and projects having
+	 * a member whose user account was updated.
+	 * 
+	 * @param since - watermark of the previous synchronization
+	 * @return the identifiers of the changed projects
+	 * @throws SQLException on database access error
+	 */
+	public Set<String> getProjectsChangedSince(Timestamp since) throws SQLException {
+		Set<String> result = new HashSet<String>();
+		
+		Connection c = null;
+		PreparedStatement statement = null;
+		try {
+			c = pool.getConnection();
+			statement = c.prepareStatement("SELECT identifier FROM projects WHERE updated_on >= ?" +
+					" UNION SELECT p.identifier FROM members m, projects p, users u WHERE" +
+					" m.project_id=p.id AND u.id=m.user_id AND (m.created_on >= ? OR u.updated_on >= ?);");
+			statement.setTimestamp(1, since);
+			statement.setTimestamp(2, since);
+			statement.setTimestamp(3, since);
+			ResultSet resultSet = statement.executeQuery();
+			
+			while (resultSet.next()) {
+				result.add(resultSet.getString(1));
+			}
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns a fingerprint of the membership of every project: number of members,
+	 * sum of member IDs and a checksum of (member, user, role) triples. Members
+	 * removed or changing role leave no timestamp behind, but they change the
+	 * fingerprint. Only one short row per project is transferred, but the whole
+	 * members table is scanned.
+	 * 
+	 * @return the membership fingerprints, keyed by project identifier
+	 * @throws SQLException on database access error
+	 */
+	public HashMap<String, String> getMembershipFingerprints() throws SQLException {
+		HashMap<String, String> result = new HashMap<String, String>();
+		
+		Connection c = null;
+		Statement statement = null;
+		try {
+			c = pool.getConnection();
+			statement = createStreamingStatement(c);
+			ResultSet resultSet = statement.executeQuery(FINGERPRINT_QUERY + " GROUP BY p.identifier;");
+			
+			handOutFingerprints(resultSet, result);
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the membership fingerprints of the given projects, batched in IN
+	 * clauses of at most <code>IN_CLAUSE_BATCH_SIZE</code> identifiers. Only
+	 * the members of these projects are read, through the project_id index.
+	 * 
+	 * @param projectIdentifiers - identifiers of the projects
+	 * @return the membership fingerprints of the existing projects, keyed by identifier
+	 * @throws SQLException on database access error
+	 */
+	public HashMap<String, String> getMembershipFingerprints(Collection<String> projectIdentifiers) throws SQLException {
+		HashMap<String, String> result = new HashMap<String, String>();
+		List<String> identifiers = new ArrayList<String>(projectIdentifiers);
+		
+		for (int start = 0; start < identifiers.size(); start += IN_CLAUSE_BATCH_SIZE) {
+			List<String> batch = identifiers.subList(start, Math.min(identifiers.size(), start + IN_CLAUSE_BATCH_SIZE));
+			
+			Connection c = null;
+			PreparedStatement statement = null;
+			try {
+				c = pool.getConnection();
+				
+				StringBuilder placeholders = new StringBuilder();
+				for (int i = 0; i < batch.size(); i++) {
+					placeholders.append(i == 0 ? "?" : ",?");
+				}
+				
+				statement = c.prepareStatement(FINGERPRINT_QUERY + " WHERE p.identifier IN (" +
+						placeholders + ") GROUP BY p.identifier;");
+				for (int i = 0; i < batch.size(); i++) {
+					statement.setString(i + 1, batch.get(i));
+				}
+				
+				handOutFingerprints(statement.executeQuery(), result);
+			} catch (Exception e1) {
+				throw new SQLException(e1);
+			} finally {
+				closeStatement(statement);
+				pool.release(c);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the number of members of every project. MySQL counts the entries
+	 * of the project_id index, without reading the members rows themselves.
+	 * 
+	 * @return the number of members, keyed by project identifier
+	 * @throws SQLException on database access error
+	 */
+	public HashMap<String, Integer> getMemberCounts() throws SQLException {
+		HashMap<String, Integer> result = new HashMap<String, Integer>();
+		
+		Connection c = null;
+		Statement statement = null;
+		try {
+			c = pool.getConnection();
+			statement = createStreamingStatement(c);
+			ResultSet resultSet = statement.executeQuery("SELECT p.identifier, COUNT(m.id)" +
+					" FROM projects p LEFT JOIN members m ON m.project_id=p.id GROUP BY p.identifier;");
+			
+			while (resultSet.next()) {
+				result.put(resultSet.getString(1), Integer.valueOf(resultSet.getInt(2)));
+			}
+		} catch (Exception e1) {
+			throw new SQLException(e1);
+		} finally {
+			closeStatement(statement);
+			pool.release(c);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Reads the rows of a fingerprint query.
+	 * 
+	 * @param resultSet - (identifier, count, sum, checksum) rows
+	 * @param fingerprints - map receiving the fingerprints, keyed by project identifier
+	 * @throws SQLException on database access error
+	 */
+	private static void handOutFingerprints(ResultSet resultSet, Map<String, String> fingerprints) throws SQLException {
+		while (resultSet.next()) {
+			fingerprints.put(resultSet.getString(1), resultSet.getLong(2) + ":" + resultSet.getLong(3) + ":" + resultSet.getLong(4));
+		}
+	}
+	
+	/**
+	 * Test function for ReadmineDataLoader class 
+	 */
+	public static void testLoader() {
+		
+		try {
+			JdbcRedmineDataLoader loader = new JdbcRedmineDataLoader("jdbc:mysql://localhost:3306/junkdb","root","");
+			
+			System.out.println("---- Fetching all projects ----");
+			for (RedmineProjectMember pm : loader.gatherUsersByProject("")) {
+				System.out.println(pm.toString());
+			}
+			
+			System.out.println("---- Fecthing individual projects ----");
+			for (RedmineProject p : loader.getProjectList()) {
+				System.out.printf("* Fetching project [%s]\n",p.getIdentifier());
+				for (RedmineProjectMember pm : loader.gatherUsersByProject(p.getIdentifier())) {
+					System.out.println(pm.toString());
+				}
+			}
+			
+			System.out.println("---- Fetching Roles ----");
+			HashMap<Integer, String> roleList = loader.getRoleList();
+			for (Integer id : roleList.keySet()) {
+				System.out.printf("%d: %s\n", id.intValue(), roleList.get(id));
+			}
+			
+			loader.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+}
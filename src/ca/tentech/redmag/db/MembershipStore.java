@@ -0,0 +1,305 @@
+/**
+ * File name: MembershipStore.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Compact, dictionary-encoded in-memory store of Redmine memberships
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <P>Column store of (project, login, role) membership triples. Logins and
+ * project identifiers are held once each in dictionaries, and every membership
+ * is a row of primitive ints instead of an object: a few bytes per row instead
+ * of a record, its strings and a list node.</P>
+ *
+ * <P>Rows are added in any order with <code>add()</code>. The store is then
+ * sealed: rows are grouped by project, projects are ordered by identifier, and
+ * the project column is replaced by the offset of each project's first row.
+ * Rows of a project keep the order in which they were added.</P>
+ *
+ * <P>Sealed rows are read through a <code>Cursor</code>, which does not allocate
+ * anything per row. Project and login codes are dense: they can index arrays
+ * kept by the caller.</P>
+ *
+ * @author veilleux
+ */
+public class MembershipStore {
+	/** Initial number of rows allocated */
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Login of each login code */
+	private List<String> logins = new ArrayList<String>();
+	/** Login code of each login */
+	private HashMap<String, Integer> loginCodes = new HashMap<String, Integer>();
+	/** Identifier of each project code, sorted once sealed */
+	private List<String> projects = new ArrayList<String>();
+	/** Project code of each identifier */
+	private HashMap<String, Integer> projectCodes = new HashMap<String, Integer>();
+
+	/** Project code of each row, until sealed */
+	private int[] projectColumn = new int[INITIAL_CAPACITY];
+	/** Login code of each row */
+	private int[] loginColumn = new int[INITIAL_CAPACITY];
+	/** Role ID of each row */
+	private int[] roleColumn = new int[INITIAL_CAPACITY];
+	/** Number of rows */
+	private int size = 0;
+
+	/** Index of the first row of each project code, plus the row count. Null until sealed */
+	private int[] projectStart = null;
+
+	/**
+	 * Forward-only cursor over the rows of a sealed store. Getters describe the
+	 * current row and return dictionary entries, so reading a row allocates nothing.
+	 */
+	public final class Cursor {
+		/** Current row */
+		private int row;
+		/** Row after the last row of the cursor */
+		private int end;
+		/** Project code of the current row */
+		private int project;
+
+		private Cursor(int project, int start, int end) {
+			this.project = project;
+			this.row = start - 1;
+			this.end = end;
+		}
+
+		/**
+		 * Moves to the next row.
+		 *
+		 * @return false if there are no more rows
+		 */
+		public boolean next() {
+			if (row + 1 >= end) {
+				row = end;
+				return false;
+			}
+
+			row++;
+			while (projectStart[project + 1] <= row) {
+				project++;
+			}
+
+			return true;
+		}
+
+		/**
+		 * @return the project code of the current row
+		 */
+		public int getProjectCode() {
+			return project;
+		}
+
+		/**
+		 * @return the project identifier of the current row
+		 */
+		public String getProjectId() {
+			return projects.get(project);
+		}
+
+		/**
+		 * @return the login code of the current row
+		 */
+		public int getLoginCode() {
+			return loginColumn[row];
+		}
+
+		/**
+		 * @return the login of the current row
+		 */
+		public String getLogin() {
+			return logins.get(loginColumn[row]);
+		}
+
+		/**
+		 * @return the role ID of the current row
+		 */
+		public int getRoleId() {
+			return roleColumn[row];
+		}
+	}
+
+	/**
+	 * Adds a membership. The store must not be sealed yet.
+	 *
+	 * @param projectId - Project identifier
+	 * @param login - User login name
+	 * @param roleId - User Role ID in project
+	 * @throws IllegalStateException if the store is sealed
+	 */
+	public void add(String projectId, String login, int roleId) {
+		if (projectStart != null) {
+			throw new IllegalStateException("Membership store is sealed");
+		}
+
+		if (size == roleColumn.length) {
+			int capacity = size + (size >> 1);
+			projectColumn = Arrays.copyOf(projectColumn, capacity);
+			loginColumn = Arrays.copyOf(loginColumn, capacity);
+			roleColumn = Arrays.copyOf(roleColumn, capacity);
+		}
+
+		projectColumn[size] = encode(projectId, projects, projectCodes);
+		loginColumn[size] = encode(login, logins, loginCodes);
+		roleColumn[size] = roleId;
+		size++;
+	}
+
+	/**
+	 * Groups the rows by project, in identifier order, and trims the columns.
+	 * No row can be added afterwards. Sealing a sealed store does nothing.
+	 */
+	public void seal() {
+		if (projectStart != null) {
+			return;
+		}
+
+		// Renumber projects in identifier order
+		List<String> sorted = new ArrayList<String>(projects);
+		Collections.sort(sorted);
+		int[] newCode = new int[sorted.size()];
+		for (int code = 0; code < sorted.size(); code++) {
+			newCode[projectCodes.get(sorted.get(code)).intValue()] = code;
+			projectCodes.put(sorted.get(code), Integer.valueOf(code));
+		}
+		projects = sorted;
+
+		// Counting sort of the rows by project: stable, in linear time
+		int[] start = new int[projects.size() + 1];
+		for (int row = 0; row < size; row++) {
+			start[newCode[projectColumn[row]] + 1]++;
+		}
+		for (int code = 0; code < projects.size(); code++) {
+			start[code + 1] += start[code];
+		}
+
+		int[] next = Arrays.copyOf(start, projects.size());
+		int[] sortedLogins = new int[size];
+		int[] sortedRoles = new int[size];
+		for (int row = 0; row < size; row++) {
+			int target = next[newCode[projectColumn[row]]]++;
+			sortedLogins[target] = loginColumn[row];
+			sortedRoles[target] = roleColumn[row];
+		}
+
+		loginColumn = sortedLogins;
+		roleColumn = sortedRoles;
+		projectColumn = null;
+		projectStart = start;
+	}
+
+	/**
+	 * Returns a cursor over all rows, grouped by project in identifier order.
+	 * Seals the store if needed.
+	 *
+	 * @return a cursor positioned before the first row
+	 */
+	public Cursor cursor() {
+		seal();
+		return new Cursor(0, 0, size);
+	}
+
+	/**
+	 * Returns a cursor over the rows of a single project. Seals the store if needed.
+	 *
+	 * @param projectId - Project identifier
+	 * @return a cursor positioned before the first row of the project, without
+	 * rows if the project has no members
+	 */
+	public Cursor cursor(String projectId) {
+		seal();
+
+		Integer code = projectCodes.get(projectId);
+		if (code == null) {
+			return new Cursor(0, 0, 0);
+		}
+
+		int project = code.intValue();
+		return new Cursor(project, projectStart[project], projectStart[project + 1]);
+	}
+
+	/**
+	 * @return the number of memberships
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of distinct projects, which is one more than the highest project code
+	 */
+	public int getProjectCount() {
+		return projects.size();
+	}
+
+	/**
+	 * @return the number of distinct logins, which is one more than the highest login code
+	 */
+	public int getLoginCount() {
+		return logins.size();
+	}
+
+	/**
+	 * @param code - project code
+	 * @return the identifier of the project
+	 */
+	public String getProjectId(int code) {
+		return projects.get(code);
+	}
+
+	/**
+	 * @param code - login code
+	 * @return the login
+	 */
+	public String getLogin(int code) {
+		return logins.get(code);
+	}
+
+	/**
+	 * Returns the code of a value in a dictionary, adding it if absent.
+	 *
+	 * @param value - value to encode
+	 * @param values - value of each code
+	 * @param codes - code of each value
+	 * @return the code of the value
+	 */
+	private static int encode(String value, List<String> values, HashMap<String, Integer> codes) {
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = Integer.valueOf(values.size());
+			values.add(value);
+			codes.put(value, code);
+		}
+
+		return code.intValue();
+	}
+}
@@ -0,0 +1,332 @@
+/**
+ * File name: MemoryRedmineDataLoader.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Redmine data loader serving projects, roles and memberships held in memory
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * <P>Serves Redmine data added in memory through <code>addRole()</code>,
+ * <code>addProject()</code> and <code>addMembership()</code>, without any
+ * database. Used to run the whole pipeline on generated or captured data.</P>
+ * 
+ * <P>Memberships are kept by project and handed out in the same order as the
+ * database: by project identifier, then by role ID. Equal logins and
+ * identifiers are stored as a single String instance.</P>
+ * 
+ * <P>Only project updates carry a timestamp: incremental synchronization
+ * finds membership changes through the fingerprints. Methods are
+ * synchronized, so data can be added while the loader is in use.</P>
+ * 
+ * @author veilleux
+ */
+public class MemoryRedmineDataLoader implements RedmineDataLoader {
+	/** Orders the memberships of a project by role ID, like the database */
+	private static final Comparator<RedmineMembership> ROLE_ORDER = new Comparator<RedmineMembership>() {
+		public int compare(RedmineMembership m1, RedmineMembership m2) {
+			return m1.getRoleId() < m2.getRoleId() ? -1 : (m1.getRoleId() == m2.getRoleId() ? 0 : 1);
+		}
+	};
+	
+	/** Encoding of the fingerprinted values */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/** Role names, keyed by ID */
+	private HashMap<Integer, String> roles = new HashMap<Integer, String>();
+	/** Projects, keyed by identifier, in the order they were added */
+	private LinkedHashMap<String, RedmineProject> projects = new LinkedHashMap<String, RedmineProject>();
+	/** Memberships of each project, keyed by identifier */
+	private TreeMap<String, List<RedmineMembership>> memberships = new TreeMap<String, List<RedmineMembership>>();
+	/** Identifiers of the projects whose memberships are not sorted by role yet */
+	private Set<String> unsorted = new HashSet<String>();
+	/** Canonical instances of the logins and identifiers added */
+	private HashMap<String, String> dictionary = new HashMap<String, String>();
+	/** Number of memberships */
+	private int membershipCount = 0;
+	/** Project of the last membership added, and its memberships, as bulk loads add them project by project */
+	private String lastProjectId = null;
+	private List<RedmineMembership> lastMembers = null;
+	
+	/**
+	 * Adds a role, replacing any role with the same ID.
+	 * 
+	 * @param id - Role ID
+	 * @param name - Role name
+	 */
+	public synchronized void addRole(int id, String name) {
+		roles.put(Integer.valueOf(id), name);
+	}
+	
+	/**
+	 * Adds a project, replacing any project with the same identifier.
+	 * 
+	 * @param project - Project to add
+	 */
+	public synchronized void addProject(RedmineProject project) {
+		projects.put(share(project.getIdentifier()), project);
+	}
+	
+	/**
+	 * Adds a membership.
+	 * 
+	 * @param login - User login name
+	 * @param projectId - Project identifier
+	 * @param roleId - User Role ID in project
+	 */
+	public synchronized void addMembership(String login, String projectId, int roleId) {
+		if (!projectId.equals(lastProjectId)) {
+			lastProjectId = share(projectId);
+			lastMembers = memberships.get(lastProjectId);
+			if (lastMembers == null) {
+				lastMembers = new ArrayList<RedmineMembership>();
+				memberships.put(lastProjectId, lastMembers);
+			}
+			unsorted.add(lastProjectId);
+		}
+		
+		lastMembers.add(new RedmineMembership(share(login), lastProjectId, roleId));
+		membershipCount++;
+	}
+	
+	/**
+	 * @return the number of memberships
+	 */
+	public synchronized int getMembershipCount() {
+		return membershipCount;
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#close()
+	 */
+	public void close() {
+		// Nothing to release
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getRoleList()
+	 */
+	public synchronized HashMap<Integer, String> getRoleList() {
+		return new HashMap<Integer, String>(roles);
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getProjectList()
+	 */
+	public synchronized List<RedmineProject> getProjectList() {
+		return new ArrayList<RedmineProject>(projects.values());
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#loadMembershipStore()
+	 */
+	public synchronized MembershipStore loadMembershipStore() {
+		MembershipStore store = new MembershipStore();
+		
+		sortMemberships();
+		for (List<RedmineMembership> members : memberships.values()) {
+			for (RedmineMembership member : members) {
+				store.add(member.getProjectId(), member.getLogin(), member.getRoleId());
+			}
+		}
+		
+		store.seal();
+		return store;
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#gatherMemberships(java.lang.String)
+	 */
+	public synchronized List<RedmineMembership> gatherMemberships(String projectIdentifier) {
+		List<RedmineMembership> result = new ArrayList<RedmineMembership>();
+		
+		sortMemberships();
+		if (projectIdentifier.equals("")) {
+			for (List<RedmineMembership> members : memberships.values()) {
+				result.addAll(members);
+			}
+		} else if (memberships.containsKey(projectIdentifier)) {
+			result.addAll(memberships.get(projectIdentifier));
+		}
+		
+		return result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#streamMemberships(java.lang.String, ca.tentech.redmag.db.RedmineMembershipHandler)
+	 */
+	public synchronized void streamMemberships(String projectIdentifier, RedmineMembershipHandler handler) throws SQLException {
+		if (projectIdentifier.equals("")) {
+			streamMembershipsByProjects(memberships.keySet(), handler);
+		} else {
+			streamMembershipsByProjects(Collections.singleton(projectIdentifier), handler);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#streamMembershipsByProjects(java.util.Collection, ca.tentech.redmag.db.RedmineMembershipHandler)
+	 */
+	public synchronized void streamMembershipsByProjects(Collection<String> projectIdentifiers, RedmineMembershipHandler handler) throws SQLException {
+		sortMemberships();
+		
+		try {
+			for (String identifier : new TreeSet<String>(projectIdentifiers)) {
+				List<RedmineMembership> members = memberships.get(identifier);
+				if (members == null) {
+					continue;
+				}
+				
+				for (RedmineMembership member : members) {
+					handler.handleMembership(member);
+				}
+			}
+		} catch (IOException e1) {
+			throw new SQLException(e1);
+		}
+	}
+	
+	/**
+	 * Returns the clock of this computer, since there is no database server.
+	 * 
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getDatabaseTime()
+	 */
+	public Timestamp getDatabaseTime() {
+		return new Timestamp(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Returns the projects whose last update is not older than <code>since</code>.
+	 * 
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getProjectsChangedSince(java.sql.Timestamp)
+	 */
+	public synchronized Set<String> getProjectsChangedSince(Timestamp since) {
+		Set<String> result = new HashSet<String>();
+		for (RedmineProject project : projects.values()) {
+			if (project.getLastUpdated() != null && !project.getLastUpdated().before(since)) {
+				result.add(project.getIdentifier());
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Fingerprints are the number of members, then the sum and the exclusive
+	 * or of the CRC32 of each (login, role) pair.
+	 * 
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getMembershipFingerprints()
+	 */
+	public synchronized HashMap<String, String> getMembershipFingerprints() {
+		return getMembershipFingerprints(projects.keySet());
+	}
+	
+	/**
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getMembershipFingerprints(java.util.Collection)
+	 */
+	public synchronized HashMap<String, String> getMembershipFingerprints(Collection<String> projectIdentifiers) {
+		HashMap<String, String> result = new HashMap<String, String>();
+		CRC32 crc = new CRC32();
+		
+		for (String identifier : projectIdentifiers) {
+			if (!projects.containsKey(identifier)) {
+				continue;
+			}
+			
+			List<RedmineMembership> members = memberships.get(identifier);
+			long sum = 0;
+			long xor = 0;
+			
+			if (members != null) {
+				for (RedmineMembership member : members) {
+					crc.reset();
+					crc.update((member.getLogin() + ":" + member.getRoleId()).getBytes(UTF8));
+					sum += crc.getValue();
+					xor ^= crc.getValue();
+				}
+			}
+			
+			result.put(identifier, (members == null ? 0 : members.size()) + ":" + sum + ":" + xor);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @see ca.tentech.redmag.db.RedmineDataLoader#getMemberCounts()
+	 */
+	public synchronized HashMap<String, Integer> getMemberCounts() {
+		HashMap<String, Integer> result = new HashMap<String, Integer>();
+		
+		for (String identifier : projects.keySet()) {
+			List<RedmineMembership> members = memberships.get(identifier);
+			result.put(identifier, Integer.valueOf(members == null ? 0 : members.size()));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Sorts the memberships of the projects changed since the last call by
+	 * role ID. The sort is stable: memberships with the same role keep the
+	 * order in which they were added.
+	 */
+	private void sortMemberships() {
+		for (String identifier : unsorted) {
+			Collections.sort(memberships.get(identifier), ROLE_ORDER);
+		}
+		unsorted.clear();
+		lastProjectId = null;
+	}
+	
+	/**
+	 * @param value - login or identifier
+	 * @return the canonical instance equal to <code>value</code>
+	 */
+	private String share(String value) {
+		String shared = dictionary.get(value);
+		if (shared == null) {
+			dictionary.put(value, value);
+			shared = value;
+		}
+		
+		return shared;
+	}
+}
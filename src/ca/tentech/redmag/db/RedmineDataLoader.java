@@ -1,13 +1,12 @@
 /**
  * File name: RedmineDataLoader.java
- * Date: 2009-06-19
- * Time: 15:16:05
+ * Date: 2026-10-16
  * $Id$
  *
  * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
  *
  * Description:
- * Redmine database querying class
+ * Interface of the sources of Redmine projects, roles and memberships
  * 
  * ------
  * This file is part of the Redmag program (http://code.google.com/p/redmag)
@@ -28,238 +27,122 @@
  */
 package ca.tentech.redmag.db;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Date;
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
- * <P>This class executes different queries on the Redmine database
- * through the MySQL JDBC connector. It was developped using
- * Redmine 0.8.3 tables and does not rely on separate views.</P>
+ * <P>Source of the Redmine data needed to synchronize repositories and
+ * access rules. <code>JdbcRedmineDataLoader</code> queries the Redmine
+ * database; <code>MemoryRedmineDataLoader</code> serves data held in memory,
+ * and <code>SnapshotRedmineDataLoader</code> replays a snapshot file.</P>
  * 
- * <P>Each function does an independant query through an independant connection.</p>
- * <P>SQL Tutorial consulted: http://www.aavso.org/aavso/meetings/spring09/sql_intro.pdf</P>
+ * <P>Every implementation hands out memberships in the same order: by
+ * project identifier, then by role ID. Errors are reported as SQLException,
+ * whatever the data source.</P>
  * 
- * TODO: Adapt to specialized views and other connectors
- * TODO: User-based exceptions
- * TODO: Path-based exceptions- Path-based removal from main blanketing to add individually
- * TODO: Additionnal field for whether a user wants commit e-mails or not
- * TODO: Mail hook generator
- * TODO: User watch for last login (warnings)
- * TODO: User bulk add
- * TODO: Parent-child repos names
- * TODO: Post-commit hook extra script
- * TODO: Mass system message by project
  * @author veilleux
- * 
  */
-public class RedmineDataLoader {
-	/** URL of MySQL database */
-	private String dbUrl;
-	/** User name to access redmine DB */
-	private String username;
-	/** Password to access redmine DB */
-	private String password;
-
+public interface RedmineDataLoader {
+	/**
+	 * Releases the resources held by the loader. The loader cannot be used afterwards.
+	 */
+	public void close();
+	
+	/**
+	 * @return a map of human-readble role names, keyed by ID
+	 * @throws SQLException on data access error
+	 */
+	public HashMap<Integer, String> getRoleList() throws SQLException;
+	
+	/**
+	 * @return a list of RedmineProject instances, in table order
+	 * @throws SQLException on data access error
+	 */
+	public List<RedmineProject> getProjectList() throws SQLException;
+	
 	/**
-	 * Initialize the query class with database information.
+	 * Loads the memberships of all projects into a sealed store.
 	 * 
-	 * @param dbUrl - JDBC URL of database
-	 * @param username - User name to use for connection
-	 * @param password - Password to use for connection
-	 * @throws SQLException on initialization error
+	 * @return the memberships of all projects
+	 * @throws SQLException on data access error
 	 */
-	public RedmineDataLoader(String dbUrl, String username, String password) throws SQLException {
-		this.dbUrl = dbUrl;
-		this.username = username;
-		this.password = password;
-
-		// Register the JDBC driver for MySQL.
-		try {
-			Class.forName("com.mysql.jdbc.Driver");
-		} catch (ClassNotFoundException e) {
-			e.printStackTrace();
-			
-			// Rethrow exception to ensure no calls are made on badly initialized JDBC driver
-			throw new SQLException(e);
-		}
-	}
-
+	public MembershipStore loadMembershipStore() throws SQLException;
+	
 	/**
-	 * Queries all existing roles, keyed by ID.
+	 * Returns the memberships of a single project, or of all projects if
+	 * <code>projectIdentifier</code> is empty.
 	 * 
-	 * @return a map of human-readble role names, keyed by ID
-	 * @throws SQLException on database access error 
+	 * @param projectIdentifier - Project identifier, or "" for all projects
+	 * @return a list of RedmineMembership instances
+	 * @throws SQLException on data access error
 	 */
-	public HashMap<Integer, String> getRoleList() throws SQLException {
-		HashMap<Integer, String> result = new HashMap<Integer, String>();
-		
-		try {
-			ResultSet resultSet;
-
-			// Get connection to database
-			Connection c = DriverManager.getConnection(dbUrl, username,
-					password);
-
-			// Query DB for roles
-			Statement statement = c.createStatement(
-					ResultSet.TYPE_SCROLL_INSENSITIVE,
-					ResultSet.CONCUR_READ_ONLY);
-			resultSet = statement.executeQuery("SELECT id, name FROM roles;");
-
-			while (resultSet.next()) {
-				result.put(resultSet.getInt("id"), resultSet.getString("name"));
-			}
-
-			c.close();
-		} catch (Exception e1) {
-			throw new SQLException(e1);
-		}
-		
-		return result;
-	}
-
+	public List<RedmineMembership> gatherMemberships(String projectIdentifier) throws SQLException;
+	
 	/**
-	 * Queries the project list and returns project instances. The 
-	 * RedmineProject class is a subset of the project table.
+	 * Hands each membership of a single project, or of all projects if
+	 * <code>projectIdentifier</code> is empty, to <code>handler</code>.
 	 * 
-	 * @return a list of RedmineProject instances
-	 * @throws SQLException on database access error 
+	 * @param projectIdentifier - Project identifier, or "" for all projects
+	 * @param handler - callback receiving each membership
+	 * @throws SQLException on data access error, or if the handler fails
 	 */
-	public List<RedmineProject> getProjectList() throws SQLException {
-		LinkedList<RedmineProject> result = new LinkedList<RedmineProject>();
-		
-		try {
-			ResultSet resultSet;
-
-			// Get connection to database
-			Connection c = DriverManager.getConnection(dbUrl, username,
-					password);
-
-			// Query DB for projects
-			Statement statement = c.createStatement(
-					ResultSet.TYPE_SCROLL_INSENSITIVE,
-					ResultSet.CONCUR_READ_ONLY);
-			resultSet = statement.executeQuery("SELECT identifier, name, description, parent_id, updated_on FROM projects;");
-
-			// Add all project rows to the collection
-			while (resultSet.next()) {
-				String identifier = resultSet.getString("identifier");
-				String name = resultSet.getString("name");
-				String description = resultSet.getString("description");
-				boolean isSubproject = resultSet.getInt("parent_id") > 0;
-				Date lastUpdated = resultSet.getDate("updated_on");
-				
-				result.add(new RedmineProject(identifier, name, description, isSubproject, lastUpdated));
-			}
-
-			c.close();
-		} catch (Exception e1) {
-			throw new SQLException(e1);
-		}
-		
-		return result;
-	}
-
+	public void streamMemberships(String projectIdentifier, RedmineMembershipHandler handler) throws SQLException;
+	
 	/**
-	 * Returns a subset of Redmine project members by joining members, users
-	 * and projects. The <code>projectIdentifier</code> is the project for
-	 * which to gather users. In the case of <code>projectIdentifier == ""</code>,
-	 * all members of all projects are retrieved.
-	 *  
-	 * @param projectIdentifier - Project table "identifier" to select from. If
-	 * empty, members of all projects are queried.
+	 * Hands each membership of a set of projects to <code>handler</code>.
 	 * 
-	 * @return a list of RedmineProjectMember instances
-	 * @throws SQLException on database access error
+	 * @param projectIdentifiers - Project identifiers to select from
+	 * @param handler - callback receiving each membership
+	 * @throws SQLException on data access error, or if the handler fails
 	 */
-	public List<RedmineProjectMember> gatherUsersByProject(String projectIdentifier) throws SQLException {
-		List<RedmineProjectMember> result = new LinkedList<RedmineProjectMember>();
-		
-		try {
-			ResultSet resultSet;
-
-			// Get connection to database
-			Connection c = DriverManager.getConnection(dbUrl, username,
-					password);
-
-			// Query DB for members, joining with projects and users
-			Statement statement = c.createStatement(
-					ResultSet.TYPE_SCROLL_INSENSITIVE,
-					ResultSet.CONCUR_READ_ONLY);
-
-			// Check to see if we are asking for a specific project
-			if (!projectIdentifier.equals("")) {
-				resultSet = statement.executeQuery("SELECT p.identifier, u.login," +
-						" u.firstname, u.lastname, u.mail, u.admin, u.last_login_on,"+
-						" m.role_id FROM members m, projects p, users u WHERE"+
-						" m.project_id=p.id AND u.id=m.user_id AND p.identifier='"+
-						projectIdentifier+"' ORDER BY identifier, role_id;");
-			} else {
-				resultSet = statement.executeQuery("SELECT p.identifier, u.login," +
-						" u.firstname, u.lastname, u.mail, u.admin, u.last_login_on,"+
-						" m.role_id FROM members m, projects p, users u WHERE"+
-						" m.project_id=p.id AND u.id=m.user_id ORDER BY identifier, role_id;");
-			}
-
-			// Store result set to POJO collection
-			while (resultSet.next()) {
-				String login = resultSet.getString("login");
-				String firstName = resultSet.getString("firstname");
-				String lastName = resultSet.getString("lastname");
-				String mailAddress = resultSet.getString("mail");
-				String projectId = resultSet.getString("identifier");
-				int roleId = resultSet.getInt("role_id");
-				boolean isAdministrator = resultSet.getBoolean("admin");
-				Date lastLoginDate = resultSet.getDate("last_login_on");
-				
-				RedmineProjectMember pm = new RedmineProjectMember(login, firstName, lastName, mailAddress, projectId, roleId, isAdministrator, lastLoginDate);
-				result.add(pm);
-			}
-
-			c.close();
-		} catch (Exception e1) {
-			e1.printStackTrace();
-			throw new SQLException(e1);
-		}
-		
-		return result;
-	}
+	public void streamMembershipsByProjects(Collection<String> projectIdentifiers, RedmineMembershipHandler handler) throws SQLException;
+	
+	/**
+	 * @return the current time of the data source, used as watermark for
+	 * incremental synchronization
+	 * @throws SQLException on data access error
+	 */
+	public Timestamp getDatabaseTime() throws SQLException;
 	
 	/**
-	 * Test function for ReadmineDataLoader class 
+	 * @param since - watermark of the previous synchronization
+	 * @return the identifiers of the projects known to have changed since <code>since</code>
+	 * @throws SQLException on data access error
+	 */
+	public Set<String> getProjectsChangedSince(Timestamp since) throws SQLException;
+	
+	/**
+	 * Returns a fingerprint of the membership of every project, which changes
+	 * whenever a member is added, removed or changes role. Fingerprints are
+	 * only comparable between runs using the same kind of loader.
+	 * 
+	 * @return the membership fingerprints, keyed by project identifier
+	 * @throws SQLException on data access error
+	 */
+	public HashMap<String, String> getMembershipFingerprints() throws SQLException;
+	
+	/**
+	 * Returns the membership fingerprints of the given projects only, equal to
+	 * those returned by <code>getMembershipFingerprints()</code>. The cost is
+	 * proportional to the size of these projects.
+	 * 
+	 * @param projectIdentifiers - identifiers of the projects
+	 * @return the membership fingerprints of the existing projects, keyed by identifier
+	 * @throws SQLException on data access error
+	 */
+	public HashMap<String, String> getMembershipFingerprints(Collection<String> projectIdentifiers) throws SQLException;
+	
+	/**
+	 * Returns the number of members of every project. Much cheaper than the
+	 * fingerprints, it still finds removed members, which leave no timestamp
+	 * behind, but not role changes.
+	 * 
+	 * @return the number of members, keyed by project identifier
+	 * @throws SQLException on data access error
 	 */
-	public static void testLoader() {
-		
-		try {
-			RedmineDataLoader loader = new RedmineDataLoader("jdbc:mysql://localhost:3306/junkdb","root","");
-			
-			System.out.println("---- Fetching all projects ----");
-			for (RedmineProjectMember pm : loader.gatherUsersByProject("")) {
-				System.out.println(pm.toString());
-			}
-			
-			System.out.println("---- Fecthing individual projects ----");
-			for (RedmineProject p : loader.getProjectList()) {
-				System.out.printf("* Fetching project [%s]\n",p.getIdentifier());
-				for (RedmineProjectMember pm : loader.gatherUsersByProject(p.getIdentifier())) {
-					System.out.println(pm.toString());
-				}
-			}
-			
-			System.out.println("---- Fetching Roles ----");
-			HashMap<Integer, String> roleList = loader.getRoleList();
-			for (Integer id : roleList.keySet()) {
-				System.out.printf("%d: %s\n", id.intValue(), roleList.get(id));
-			}
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-	}
+	public HashMap<String, Integer> getMemberCounts() throws SQLException;
 }
@@ -0,0 +1,86 @@
+/**
+ * File name: RedmineMembership.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Slim membership record holding only what is needed to generate SVN access policies
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+/**
+ * Projection of a Redmine membership row on the columns needed to generate
+ * SVN access policies: login, project and role. Unlike RedmineProjectMember,
+ * it carries no user details, so bulk loads only transfer and hold these
+ * three values. Logins and identifiers read by RedmineDataLoader are shared
+ * between rows rather than duplicated.
+ * 
+ * @author veilleux
+ */
+public final class RedmineMembership {
+	/** User login name */
+	private final String login;
+	/** Project identifier */
+	private final String projectId;
+	/** User Role ID in project (ordinal, based on Roles table IDs) */
+	private final int roleId;
+	
+	/**
+	 * @param login - User login name
+	 * @param projectId - Project identifier
+	 * @param roleId - User Role ID in project (ordinal, based on Roles table IDs)
+	 */
+	public RedmineMembership(String login, String projectId, int roleId) {
+		this.login = login;
+		this.projectId = projectId;
+		this.roleId = roleId;
+	}
+	
+	/**
+	 * @return the login
+	 */
+	public String getLogin() {
+		return login;
+	}
+	
+	/**
+	 * @return the projectId
+	 */
+	public String getProjectId() {
+		return projectId;
+	}
+	
+	/**
+	 * @return the roleId
+	 */
+	public int getRoleId() {
+		return roleId;
+	}
+	
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("ProjectID: %s, Login: %s, Role= %d", projectId, login, roleId);
+	}
+}
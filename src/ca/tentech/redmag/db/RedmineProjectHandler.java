@@ -0,0 +1,47 @@
+/**
+ * File name: RedmineProjectHandler.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Callback interface for project rows streamed from the Redmine database
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+import java.io.IOException;
+
+/**
+ * Callback receiving project rows one at a time, as they are read from a
+ * streaming result set by <code>RedmineDataLoader</code>.
+ * 
+ * @author veilleux
+ */
+public interface RedmineProjectHandler {
+	/**
+	 * Called once for every project row read from the database.
+	 * 
+	 * @param project - project built from the current row
+	 * @throws IOException if the row could not be processed. The query is
+	 * aborted and the error is rethrown by the loader as an SQLException.
+	 */
+	public void handleProject(RedmineProject project) throws IOException;
+}
@@ -0,0 +1,249 @@
+/**
+ * File name: SnapshotRedmineDataLoader.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Redmine data loader replaying a snapshot file, and snapshot file writer
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.db;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <P>Replays a snapshot of the Redmine data, captured from the database with
+ * <code>save()</code>, without touching the database. The whole snapshot is
+ * read into memory when the loader is created.</P>
+ * 
+ * <P>A snapshot is a UTF-8 text file holding one tab-separated record per
+ * line, after a "redmag-snapshot" version line. Files whose name ends with
+ * ".gz" are compressed with gzip. Lines starting with "#" are comments.</P>
+ * <pre>
+ * redmag-snapshot	1
+ * role	&lt;id&gt;	&lt;name&gt;
+ * project	&lt;identifier&gt;	&lt;subproject: 0 or 1&gt;	&lt;updated on, ms since epoch&gt;	&lt;name&gt;	&lt;description&gt;
+ * member	&lt;project identifier&gt;	&lt;login&gt;	&lt;role id&gt;
+ * </pre>
+ * <P>Backslashes, tabs and line breaks within values are escaped as "\\",
+ * "\t", "\n" and "\r", and missing values are written "\N".</P>
+ * 
+ * @author veilleux
+ */
+public class SnapshotRedmineDataLoader extends MemoryRedmineDataLoader {
+	/** First line of a snapshot file, with the format version */
+	public static final String SNAPSHOT_HEADER = "redmag-snapshot\t1";
+	/** Marker of missing values */
+	private static final String NULL_VALUE = "\\N";
+	/** Size of the file and compression buffers */
+	private static final int BUFFER_SIZE = 65536;
+	/** Encoding of snapshot files */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Reads a snapshot file.
+	 * 
+	 * @param file - snapshot file written by <code>save()</code>
+	 * @throws SQLException on read error, or if the file is not a valid snapshot
+	 */
+	public SnapshotRedmineDataLoader(File file) throws SQLException {
+		int lineNumber = 0;
+		
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+			if (file.getName().endsWith(".gz")) {
+				in = new GZIPInputStream(in, BUFFER_SIZE);
+			}
+			
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF8));
+			try {
+				boolean header = false;
+				String line;
+				
+				while ((line = reader.readLine()) != null) {
+					lineNumber++;
+					if (line.length() == 0 || line.startsWith("#")) {
+						continue;
+					}
+					
+					if (!header) {
+						if (!line.equals(SNAPSHOT_HEADER)) {
+							throw new IOException("not a Redmag snapshot, or unsupported version");
+						}
+						header = true;
+						continue;
+					}
+					
+					String [] fields = line.split("\t", -1);
+					if (fields[0].equals("member") && fields.length == 4) {
+						addMembership(unescape(fields[2]), unescape(fields[1]), Integer.parseInt(fields[3]));
+					} else if (fields[0].equals("project") && fields.length == 6) {
+						String updated = unescape(fields[3]);
+						addProject(new RedmineProject(unescape(fields[1]), unescape(fields[4]), unescape(fields[5]),
+								fields[2].equals("1"), updated == null ? null : new Date(Long.parseLong(updated))));
+					} else if (fields[0].equals("role") && fields.length == 3) {
+						addRole(Integer.parseInt(fields[1]), unescape(fields[2]));
+					} else {
+						throw new IOException("unsupported record");
+					}
+				}
+				
+				if (!header) {
+					throw new IOException("empty snapshot");
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e1) {
+			throw new SQLException(String.format("Bad snapshot %s, line %d: %s", file, lineNumber, e1.getMessage()), e1);
+		}
+	}
+	
+	/**
+	 * Captures the roles, projects and memberships served by a loader into a
+	 * snapshot file. The file is deleted if the capture fails.
+	 * 
+	 * @param source - loader to capture, usually connected to the database
+	 * @param file - snapshot file to write, compressed if its name ends with ".gz"
+	 * @return the number of memberships written
+	 * @throws SQLException on data access or write error
+	 */
+	public static int save(RedmineDataLoader source, File file) throws SQLException {
+		final int [] count = {0};
+		
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+			if (file.getName().endsWith(".gz")) {
+				out = new GZIPOutputStream(out, BUFFER_SIZE);
+			}
+			
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8));
+			try {
+				writer.write(SNAPSHOT_HEADER + "\n");
+				
+				for (Map.Entry<Integer, String> role : source.getRoleList().entrySet()) {
+					writer.write(String.format("role\t%d\t%s\n", role.getKey().intValue(), escape(role.getValue())));
+				}
+				
+				for (RedmineProject project : source.getProjectList()) {
+					Date updated = project.getLastUpdated();
+					writer.write(String.format("project\t%s\t%d\t%s\t%s\t%s\n", escape(project.getIdentifier()),
+							project.isSubproject() ? 1 : 0, updated == null ? NULL_VALUE : Long.toString(updated.getTime()),
+							escape(project.getName()), escape(project.getDescription())));
+				}
+				
+				source.streamMemberships("", new RedmineMembershipHandler() {
+					public void handleMembership(RedmineMembership membership) throws IOException {
+						writer.write("member\t" + escape(membership.getProjectId()) + "\t" + escape(membership.getLogin())
+								+ "\t" + membership.getRoleId() + "\n");
+						count[0]++;
+					}
+				});
+			} finally {
+				writer.close();
+			}
+		} catch (Exception e1) {
+			file.delete();
+			
+			throw new SQLException(String.format("Snapshot %s could not be saved: %s", file, e1.getMessage()), e1);
+		}
+		
+		return count[0];
+	}
+	
+	/**
+	 * @param value - value to write, possibly null
+	 * @return the value with backslashes, tabs and line breaks escaped, or "\N" if null
+	 */
+	private static String escape(String value) {
+		if (value == null) {
+			return NULL_VALUE;
+		}
+		
+		StringBuilder result = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '\\': result.append("\\\\"); break;
+			case '\t': result.append("\\t"); break;
+			case '\n': result.append("\\n"); break;
+			case '\r': result.append("\\r"); break;
+			default: result.append(c);
+			}
+		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * @param field - field read from a snapshot line
+	 * @return the value written by <code>escape()</code>
+	 * @throws IOException on bad escape sequence
+	 */
+	private static String unescape(String field) throws IOException {
+		if (field.equals(NULL_VALUE)) {
+			return null;
+		}
+		if (field.indexOf('\\') < 0) {
+			return field;
+		}
+		
+		StringBuilder result = new StringBuilder(field.length());
+		for (int i = 0; i < field.length(); i++) {
+			char c = field.charAt(i);
+			if (c != '\\') {
+				result.append(c);
+				continue;
+			}
+			
+			if (++i == field.length()) {
+				throw new IOException("bad escape sequence");
+			}
+			switch (field.charAt(i)) {
+			case '\\': result.append('\\'); break;
+			case 't': result.append('\t'); break;
+			case 'n': result.append('\n'); break;
+			case 'r': result.append('\r'); break;
+			default: throw new IOException("bad escape sequence");
+			}
+		}
+		
+		return result.toString();
+	}
+}
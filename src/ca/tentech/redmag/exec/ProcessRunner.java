@@ -0,0 +1,261 @@
+/**
+ * File name: ProcessRunner.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Process execution helper that blocks on process exit, with an
+ * optional timeout, and collects standard output and error.
+ * Replaces the polling loop of com.Ostermiller.util.ExecHelper.
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.exec;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <P>Runs a non-Java process and collects its results. Unlike
+ * <code>com.Ostermiller.util.ExecHelper</code>, which polls the output streams
+ * and the exit value every 100ms, the caller blocks in <code>Process.waitFor()</code>.
+ * Short commands therefore return as soon as the process exits.</P>
+ *
+ * <P>Standard output and standard error are redirected to temporary files, read
+ * once the process has exited. No thread ever blocks reading a pipe: a killed
+ * shell may leave children holding its pipes open, and closing a pipe does not
+ * wake up a thread blocked reading it.</P>
+ *
+ * <P>No input is passed to the process on STDIN. Output from the process is
+ * expected to be text in the system's default character set.</P>
+ *
+ * @author veilleux
+ */
+public final class ProcessRunner {
+	/** Exit status reported for a process killed on timeout */
+	public static final int TIMEOUT_STATUS = -1;
+
+	/** Thread killing processes that exceed their timeout */
+	private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("redmag-watchdog"));
+
+	/** Everything the process wrote to its standard output */
+	private String output;
+	/** Everything the process wrote to its standard error */
+	private String error;
+	/** Exit status of the process */
+	private int status;
+	/** Whether the process was killed because it exceeded its timeout */
+	private boolean timedOut;
+
+	/**
+	 * Creates daemon threads, so that an idle watchdog never keeps the JVM alive
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private String name;
+		private int count = 0;
+
+		public DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, name + "-" + (++count));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	/**
+	 * Kills a process that is still running when its timeout expires
+	 */
+	private static class Watchdog implements Runnable {
+		private Process process;
+		private AtomicBoolean killed;
+
+		public Watchdog(Process process, AtomicBoolean killed) {
+			this.process = process;
+			this.killed = killed;
+		}
+
+		public void run() {
+			try {
+				// Exited normally, possibly just before the watchdog was cancelled
+				process.exitValue();
+			} catch (IllegalThreadStateException e) {
+				killed.set(true);
+				process.destroy();
+			}
+		}
+	}
+
+	/**
+	 * Executes the specified command and arguments in a separate process, and
+	 * waits for the process to finish.
+	 *
+	 * @param cmdarray - array containing the command to call and its arguments
+	 * @param timeout - maximum run time in milliseconds, after which the process is
+	 * killed and <code>TIMEOUT_STATUS</code> is reported. 0 means no timeout.
+	 * @return the results of the execution
+	 * @throws IOException if the process cannot be started, or if interrupted while waiting
+	 */
+	public static ProcessRunner exec(String[] cmdarray, long timeout) throws IOException {
+		return new ProcessRunner(new ProcessBuilder(cmdarray), timeout);
+	}
+
+	/**
+	 * Executes the specified command using a shell: /bin/sh on Unix,
+	 * cmd.exe on Windows.
+	 *
+	 * @param command - command line to be parsed by the shell and executed
+	 * @param timeout - maximum run time in milliseconds, 0 means no timeout
+	 * @return the results of the execution
+	 * @throws IOException if the process cannot be started, or if interrupted while waiting
+	 */
+	public static ProcessRunner execUsingShell(String command, long timeout) throws IOException {
+		if (command == null) {
+			throw new NullPointerException();
+		}
+
+		String[] cmdarray;
+		if (System.getProperty("os.name").startsWith("Windows")) {
+			cmdarray = new String[] {"cmd.exe", "/C", command};
+		} else {
+			cmdarray = new String[] {"/bin/sh", "-c", command};
+		}
+
+		return exec(cmdarray, timeout);
+	}
+
+	/**
+	 * Starts a process with its output redirected to temporary files, waits
+	 * for it to finish and reads its output.
+	 *
+	 * @param builder - process to start
+	 * @param timeout - maximum run time in milliseconds, 0 means no timeout
+	 * @throws IOException on start or read error, or if interrupted while waiting
+	 */
+	private ProcessRunner(ProcessBuilder builder, long timeout) throws IOException {
+		File outputFile = File.createTempFile("redmag-", ".out");
+		File errorFile = null;
+		try {
+			errorFile = File.createTempFile("redmag-", ".err");
+			builder.redirectOutput(outputFile);
+			builder.redirectError(errorFile);
+
+			Process process = builder.start();
+			process.getOutputStream().close();
+
+			// Only set by the watchdog when it actually kills a running process
+			AtomicBoolean killed = new AtomicBoolean(false);
+			ScheduledFuture<?> kill = null;
+			if (timeout > 0) {
+				kill = watchdog.schedule(new Watchdog(process, killed), timeout, TimeUnit.MILLISECONDS);
+			}
+
+			try {
+				status = process.waitFor();
+			} catch (InterruptedException e) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted - processes killed");
+			} finally {
+				if (kill != null) {
+					kill.cancel(false);
+				}
+			}
+
+			// Children of a killed shell may still be writing: read what is there
+			output = readText(outputFile);
+			error = readText(errorFile);
+
+			timedOut = killed.get();
+			if (timedOut) {
+				status = TIMEOUT_STATUS;
+				error = error + "\nKilled after timeout of " + timeout + "ms";
+			}
+		} finally {
+			outputFile.delete();
+			if (errorFile != null) {
+				errorFile.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads a whole file as text
+	 *
+	 * @param file - file to read
+	 * @return the content of the file
+	 * @throws IOException on read error
+	 */
+	private static String readText(File file) throws IOException {
+		StringBuilder result = new StringBuilder();
+		Reader reader = new InputStreamReader(new FileInputStream(file));
+		try {
+			char[] buffer = new char[4096];
+			int read;
+			while ((read = reader.read(buffer)) >= 0) {
+				result.append(buffer, 0, read);
+			}
+		} finally {
+			reader.close();
+		}
+
+		return result.toString();
+	}
+
+	/**
+	 * @return everything the executed process wrote to its standard output
+	 */
+	public String getOutput() {
+		return output;
+	}
+
+	/**
+	 * @return everything the executed process wrote to its standard error
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * @return exit status of the executed process, by convention, the value 0
+	 * indicates normal termination. <code>TIMEOUT_STATUS</code> if killed on timeout.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return whether the process was killed because it exceeded its timeout
+	 */
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+}
@@ -0,0 +1,159 @@
+/**
+ * File name: AuthzCompactor.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Compaction pass removing redundant repository sections from
+ * generated AuthZ files
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Compaction pass over a generated AuthZ file. The section of a repository
+ * whose only rule denies access to everyone repeats the default policy of the
+ * global <code>[/]</code> section, which SVN applies to repositories without
+ * a section of their own. Such sections are dropped.</P>
+ *
+ * <P>Sections of different repositories cannot be merged: SVN matches the
+ * repository name of a section literally, <code>:glob:</code> sections
+ * included, where wildcards only apply to the path.</P>
+ *
+ * <P>The file is processed one blank-line separated block at a time, as
+ * written by <code>AuthzWriter</code>. The result should be checked with
+ * <code>AuthzVerifier</code> before use.</P>
+ *
+ * @author veilleux
+ */
+public final class AuthzCompactor {
+	private AuthzCompactor() {
+		// Static methods only
+	}
+
+	/**
+	 * Writes a compacted copy of an AuthZ file.
+	 *
+	 * @param input - AuthZ file written by <code>AuthzWriter</code>
+	 * @param output - compacted file to write
+	 * @return the number of sections dropped
+	 * @throws IOException on read or write error
+	 */
+	public static int compact(File input, File output) throws IOException {
+		Charset charset = Charset.defaultCharset();
+		int dropped = 0;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), charset));
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), charset));
+			try {
+				// Sections are only redundant once the default policy is known to deny all
+				boolean defaultDeniesAll = false;
+				List<String> block = new ArrayList<String>();
+				String line;
+
+				do {
+					line = reader.readLine();
+					if (line != null && line.trim().length() > 0) {
+						block.add(line);
+						continue;
+					}
+
+					String section = sectionOf(block);
+					if (section != null && section.equals("/")) {
+						defaultDeniesAll = deniesAll(block);
+					}
+
+					if (defaultDeniesAll && section != null && section.endsWith(":/") && deniesAll(block)) {
+						dropped++;
+					} else {
+						for (String blockLine : block) {
+							writer.write(blockLine);
+							writer.write("\n");
+						}
+						if (line != null) {
+							writer.write("\n");
+						}
+					}
+					block.clear();
+				} while (line != null);
+			} finally {
+				writer.close();
+			}
+		} finally {
+			reader.close();
+		}
+
+		return dropped;
+	}
+
+	/**
+	 * @param block - lines of a block
+	 * @return the name of the section starting in the block, or null if none
+	 */
+	private static String sectionOf(List<String> block) {
+		for (String line : block) {
+			line = line.trim();
+			if (line.startsWith("[") && line.endsWith("]")) {
+				return line.substring(1, line.length() - 1);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param block - lines of a section block
+	 * @return true if the only rules of the section deny access to everyone
+	 */
+	private static boolean deniesAll(List<String> block) {
+		boolean rules = false;
+
+		for (String line : block) {
+			line = line.trim();
+			if (line.startsWith("#") || line.startsWith("[")) {
+				continue;
+			}
+
+			int equals = line.indexOf('=');
+			if (equals < 0 || !line.substring(0, equals).trim().equals("*")
+					|| line.substring(equals + 1).trim().length() > 0) {
+				return false;
+			}
+			rules = true;
+		}
+
+		return rules;
+	}
+}
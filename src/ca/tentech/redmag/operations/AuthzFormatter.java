@@ -0,0 +1,149 @@
+/**
+ * File name: AuthzFormatter.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Canonical formatting of SVN AuthZ file entries, so that the same
+ * access data always yields byte-identical output
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * <P>Canonical formatter for AuthZ file entries. Group members are sorted and
+ * deduplicated, and every line has a single fixed layout. The order in which
+ * members were read from the database therefore never shows in the output:
+ * unchanged access data yields a byte-identical file, which keeps content
+ * hashes, diffs and mirror replication cheap.</P>
+ *
+ * <P>Callers are expected to write projects in identifier order.</P>
+ *
+ * @author veilleux
+ */
+public final class AuthzFormatter {
+	/** Separator of group members */
+	private static final String MEMBER_SEPARATOR = ", ";
+	/** Prefix of the names of groups shared by projects with the same members */
+	private static final String SHARED_GROUP_PREFIX = "members-";
+	/** Number of hexadecimal digits of the member set hash kept in shared group names */
+	private static final int SHARED_GROUP_HASH_DIGITS = 12;
+
+	private AuthzFormatter() {
+		// Static methods only
+	}
+
+	/**
+	 * @param logins - logins, in any order, possibly with duplicates
+	 * @return the distinct logins, in ascending order
+	 */
+	public static List<String> canonicalLogins(Collection<String> logins) {
+		return new ArrayList<String>(new TreeSet<String>(logins));
+	}
+
+	/**
+	 * @param logins - logins, in any order, possibly with duplicates
+	 * @return the member list of a group of these logins, as written in a group line
+	 */
+	public static String formatMembers(Collection<String> logins) {
+		return SvnReposAccessProcessor.stringJoin(canonicalLogins(logins), MEMBER_SEPARATOR);
+	}
+
+	/**
+	 * Names the group shared by all projects with the same member set. The
+	 * name is derived from a hash of the members, so it does not depend on
+	 * the other projects and stays the same from one run to the next.
+	 *
+	 * @param members - canonical member list, as returned by <code>formatMembers()</code>
+	 * @return the shared group name, ex: "members-3f2a9c01b7e4"
+	 */
+	public static String sharedGroupName(String members) {
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-1").digest(members.getBytes(Charset.forName("UTF-8")));
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-1 is required on every Java platform
+			throw new IllegalStateException(e);
+		}
+
+		StringBuilder name = new StringBuilder(SHARED_GROUP_PREFIX);
+		for (int i = 0; i < SHARED_GROUP_HASH_DIGITS / 2; i++) {
+			name.append(String.format("%02x", hash[i] & 0xff));
+		}
+
+		return name.toString();
+	}
+
+	/**
+	 * Formats a group definition of the <code>[groups]</code> section.
+	 *
+	 * @param group - group name
+	 * @param logins - logins of the group members, in any order
+	 * @return the group line, ex: "proj-r = alice, bob\n"
+	 */
+	public static String formatGroup(String group, Collection<String> logins) {
+		return String.format("%s = %s\n", group, formatMembers(logins));
+	}
+
+	/**
+	 * Formats the header of the section of a repository, denying access to
+	 * everyone not explicitly listed.
+	 *
+	 * @param identifier - project identifier, used as repository name
+	 * @param path - absolute path of the repository
+	 * @return the section header lines
+	 */
+	public static String formatSectionHeader(String identifier, String path) {
+		return String.format("# Permissions for repos at %s\n[%s:/]\n* = \n", path, identifier);
+	}
+
+	/**
+	 * Formats the header of the rules file of a repository, in split layout.
+	 * The file only holds the rules of its repository, so paths are not
+	 * qualified with the repository name.
+	 *
+	 * @param identifier - project identifier, used as repository name
+	 * @param path - absolute path of the repository
+	 * @return the rules header lines
+	 */
+	public static String formatRulesHeader(String identifier, String path) {
+		return String.format("# Permissions for repos \"%s\" at %s\n[/]\n* = \n", identifier, path);
+	}
+
+	/**
+	 * Formats a rule granting access to a group.
+	 *
+	 * @param group - group name
+	 * @param access - access granted, "r" or "rw"
+	 * @return the rule line, ex: "@proj-r = r\n"
+	 */
+	public static String formatGroupRule(String group, String access) {
+		return String.format("@%s = %s\n", group, access);
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * File name: AuthzPublisher.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Atomic publication of generated AuthZ files, skipped when the
+ * content did not change
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * <P>Publishes generated AuthZ files. A file is rendered to a temporary file in
+ * the directory of its target, then renamed over the target in a single atomic
+ * step, so Apache and svnserve never read a partially written file.</P>
+ *
+ * <P>The rename only happens when the content changed. Contents are compared
+ * through a hash that excludes the generation timestamp line, so a cycle
+ * without changes leaves the live file, and its modification time, untouched
+ * and the servers do not parse it again.</P>
+ *
+ * <P>A replaced file is synced to disk before the rename; unchanged files
+ * cost no write at all.</P>
+ *
+ * @author veilleux
+ */
+public final class AuthzPublisher {
+	/** Prefix of the header line holding the generation timestamp */
+	public static final String TIMESTAMP_PREFIX = "# File generated on: ";
+	/** Digest used to compare contents */
+	private static final String DIGEST_ALGORITHM = "SHA-1";
+
+	private AuthzPublisher() {
+		// Static methods only
+	}
+
+	/**
+	 * Creates the temporary file in which a target is rendered. It is created
+	 * in the same directory as the target, so it can be renamed over it.
+	 *
+	 * @param target - file to be published
+	 * @return an empty temporary file
+	 * @throws IOException on file creation error
+	 */
+	public static File createTempFile(File target) throws IOException {
+		File absoluteTarget = target.getAbsoluteFile();
+		return File.createTempFile("." + absoluteTarget.getName(), ".tmp", absoluteTarget.getParentFile());
+	}
+
+	/**
+	 * Replaces <code>target</code> with <code>rendered</code> if their
+	 * contents differ, ignoring the generation timestamp. The rendered file is
+	 * removed in all cases. A replaced target keeps its permissions.
+	 *
+	 * @param rendered - complete rendered file, in the directory of the target
+	 * @param target - file to publish
+	 * @return true if the target was replaced, false if it was already up to date
+	 * @throws IOException on read error or if the rename fails
+	 */
+	public static boolean publish(File rendered, File target) throws IOException {
+		try {
+			if (target.isFile() && Arrays.equals(contentHash(rendered), contentHash(target))) {
+				return false;
+			}
+
+			// Servers must keep the access they had to the previous file
+			if (target.isFile()) {
+				try {
+					Files.setPosixFilePermissions(rendered.toPath(), Files.getPosixFilePermissions(target.toPath()));
+				} catch (UnsupportedOperationException e) {
+					// Not a POSIX filesystem: keep default permissions
+				}
+			}
+
+			// Content must be on disk before the rename makes it live
+			FileChannel channel = new FileOutputStream(rendered, true).getChannel();
+			try {
+				channel.force(true);
+			} finally {
+				channel.close();
+			}
+
+			Files.move(rendered.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} finally {
+			rendered.delete();
+		}
+	}
+
+	/**
+	 * Computes the hash of a generated file, skipping the generation timestamp
+	 * line. Lines are read in the default character set, in which they are written.
+	 *
+	 * @param file - file to hash
+	 * @return the digest of the file content
+	 * @throws IOException on read error
+	 */
+	public static byte[] contentHash(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("Digest not available: " + DIGEST_ALGORITHM);
+		}
+
+		Charset charset = Charset.defaultCharset();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.startsWith(TIMESTAMP_PREFIX)) {
+					digest.update(line.getBytes(charset));
+					digest.update((byte) '\n');
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return digest.digest();
+	}
+}
@@ -0,0 +1,289 @@
+/**
+ * File name: AuthzVerifier.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Compares the effective repository permissions granted by two
+ * generated AuthZ files
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <P>Round-trip verifier for AuthZ file rewrites. Both files are parsed and
+ * the access each user gets at the root of each repository is compared,
+ * following the SVN rules: the entries of the <code>[repos:/]</code> section
+ * matching a user apply if there are any, and the global <code>[/]</code>
+ * section applies otherwise. Within a section, the highest access granted by
+ * a matching entry wins.</P>
+ *
+ * <P>Only the subset of the AuthZ syntax produced by this program is
+ * understood: groups of plain logins, root sections, and <code>*</code> or
+ * <code>@group</code> entries. Anything else is reported as an error rather
+ * than guessed.</P>
+ *
+ * <P>Users who are not named in any rule of a repository all get the same
+ * access, so they are checked through a single placeholder user. The cost is
+ * proportional to the size of the files, not to users times repositories.</P>
+ *
+ * @author veilleux
+ */
+public final class AuthzVerifier {
+	/** Name of the global section, applying to all repositories */
+	private static final String GLOBAL_SECTION = "/";
+	/** Suffix of the repository root sections */
+	private static final String ROOT_SUFFIX = ":/";
+	/** Placeholder for the users not named in any rule, never a valid login */
+	private static final String OTHER_USER = "*other*";
+	/** Maximum number of differences reported */
+	private static final int MAX_DIFFERENCES = 20;
+
+	/** Access levels, in increasing order */
+	private static final String [] ACCESS_LEVELS = {"", "r", "rw"};
+
+	private AuthzVerifier() {
+		// Static methods only
+	}
+
+	/**
+	 * Parsed AuthZ rules
+	 */
+	private static class Rules {
+		/** Members of each group */
+		private Map<String, Set<String>> groups = new HashMap<String, Set<String>>();
+		/** Entries (who, access) of each section, keyed by section name */
+		private Map<String, List<String[]>> sections = new HashMap<String, List<String[]>>();
+	}
+
+	/**
+	 * Compares the effective permissions of two AuthZ files.
+	 *
+	 * @param expected - reference file
+	 * @param actual - rewritten file
+	 * @return a description of the first differences found, empty if both
+	 * files grant the same access to everyone on every repository
+	 * @throws IOException on read error, or if a file uses unsupported syntax
+	 */
+	public static List<String> compare(File expected, File actual) throws IOException {
+		Rules expectedRules = parse(expected);
+		Rules actualRules = parse(actual);
+		List<String> differences = new ArrayList<String>();
+
+		Set<String> repositories = new TreeSet<String>();
+		repositories.addAll(repositoriesOf(expectedRules));
+		repositories.addAll(repositoriesOf(actualRules));
+
+		for (String repos : repositories) {
+			// Only users named in a rule applying to the repository can differ from the others
+			Set<String> users = new TreeSet<String>();
+			users.add(OTHER_USER);
+			namedUsers(expectedRules, repos, users);
+			namedUsers(actualRules, repos, users);
+
+			for (String user : users) {
+				int expectedAccess = effectiveAccess(expectedRules, repos, user);
+				int actualAccess = effectiveAccess(actualRules, repos, user);
+
+				if (expectedAccess != actualAccess) {
+					differences.add(String.format("%s on %s: \"%s\" instead of \"%s\"",
+							user.equals(OTHER_USER) ? "unnamed users" : user, repos,
+							ACCESS_LEVELS[actualAccess], ACCESS_LEVELS[expectedAccess]));
+					if (differences.size() >= MAX_DIFFERENCES) {
+						return differences;
+					}
+				}
+			}
+		}
+
+		return differences;
+	}
+
+	/**
+	 * @return the repositories having a root section
+	 */
+	private static Set<String> repositoriesOf(Rules rules) {
+		Set<String> result = new HashSet<String>();
+		for (String section : rules.sections.keySet()) {
+			if (!section.equals(GLOBAL_SECTION)) {
+				result.add(section.substring(0, section.length() - ROOT_SUFFIX.length()));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds the users named by the rules applying to a repository.
+	 */
+	private static void namedUsers(Rules rules, String repos, Set<String> users) throws IOException {
+		for (String section : new String [] {repos + ROOT_SUFFIX, GLOBAL_SECTION}) {
+			List<String[]> entries = rules.sections.get(section);
+			if (entries == null) {
+				continue;
+			}
+
+			for (String[] entry : entries) {
+				if (entry[0].startsWith("@")) {
+					users.addAll(members(rules, entry[0]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the access of a user at the root of a repository.
+	 *
+	 * @return the index of the access in ACCESS_LEVELS
+	 */
+	private static int effectiveAccess(Rules rules, String repos, String user) throws IOException {
+		for (String section : new String [] {repos + ROOT_SUFFIX, GLOBAL_SECTION}) {
+			List<String[]> entries = rules.sections.get(section);
+			if (entries == null) {
+				continue;
+			}
+
+			boolean matched = false;
+			int access = 0;
+			for (String[] entry : entries) {
+				if (entry[0].equals("*") || members(rules, entry[0]).contains(user)) {
+					matched = true;
+					access = Math.max(access, accessLevel(entry[1]));
+				}
+			}
+
+			// The most specific section with a matching entry decides
+			if (matched) {
+				return access;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @param who - entry subject, "@group"
+	 * @return the members of the group
+	 * @throws IOException if the subject is not a defined group
+	 */
+	private static Set<String> members(Rules rules, String who) throws IOException {
+		if (!who.startsWith("@")) {
+			throw new IOException("Unsupported rule subject: " + who);
+		}
+
+		Set<String> result = rules.groups.get(who.substring(1));
+		if (result == null) {
+			throw new IOException("Undefined group: " + who);
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the index of an access value in ACCESS_LEVELS
+	 * @throws IOException on unknown access value
+	 */
+	private static int accessLevel(String access) throws IOException {
+		for (int i = 0; i < ACCESS_LEVELS.length; i++) {
+			if (ACCESS_LEVELS[i].equals(access)) {
+				return i;
+			}
+		}
+
+		throw new IOException("Unsupported access: " + access);
+	}
+
+	/**
+	 * Parses an AuthZ file written by this program.
+	 *
+	 * @param file - AuthZ file
+	 * @return the parsed rules
+	 * @throws IOException on read error or unsupported syntax
+	 */
+	private static Rules parse(File file) throws IOException {
+		Rules rules = new Rules();
+		String section = null;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charset.defaultCharset()));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+
+				if (line.startsWith("[") && line.endsWith("]")) {
+					section = line.substring(1, line.length() - 1);
+					if (!section.equals("groups") && !section.equals(GLOBAL_SECTION)
+							&& (!section.endsWith(ROOT_SUFFIX) || section.startsWith(":"))) {
+						throw new IOException("Unsupported section: [" + section + "]");
+					}
+					if (!section.equals("groups") && !rules.sections.containsKey(section)) {
+						rules.sections.put(section, new ArrayList<String[]>());
+					}
+					continue;
+				}
+
+				int equals = line.indexOf('=');
+				if (section == null || equals < 0) {
+					throw new IOException("Unsupported line: " + line);
+				}
+				String key = line.substring(0, equals).trim();
+				String value = line.substring(equals + 1).trim();
+
+				if (section.equals("groups")) {
+					Set<String> members = new HashSet<String>();
+					for (String login : value.split(",")) {
+						login = login.trim();
+						if (login.startsWith("@") || login.startsWith("&") || login.startsWith("$")) {
+							throw new IOException("Unsupported group member: " + login);
+						}
+						if (login.length() > 0) {
+							members.add(login);
+						}
+					}
+					rules.groups.put(key, members);
+				} else {
+					rules.sections.get(section).add(new String [] {key, value});
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		return rules;
+	}
+}
@@ -0,0 +1,490 @@
+/**
+ * File name: AuthzWriter.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Incremental writer for SVN AuthZ files. Project groups and sections
+ * are written as soon as they are known, without holding the whole
+ * file in memory.
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import ca.tentech.redmag.RedmagMain;
+
+/**
+ * <P>Incremental writer for SVN AuthZ files. SVN requires the <code>[groups]</code>
+ * section to hold every group, yet groups and project sections are produced
+ * together, one project at a time. Group lines are written directly to the
+ * output file, while project sections are spilled to a temporary file in the
+ * same directory and appended after the groups on <code>close()</code>.</P>
+ *
+ * <P>Memory use is bounded by the buffer sizes, whatever the number of projects.</P>
+ *
+ * <P>The file is rendered to a temporary file and published by
+ * <code>AuthzPublisher</code> on <code>close()</code>: the live file is
+ * atomically replaced, and only if its content changed.</P>
+ *
+ * <P>With group deduplication, projects with the same member set share a
+ * single group instead of defining their own <code>-r</code> and
+ * <code>-rw</code> groups. Only the distinct member sets are kept in memory.</P>
+ *
+ * <P>In split layout, the output file only holds the <code>[groups]</code>
+ * section, for use as an SVN groups-db (<code>AuthzSVNGroupsFile</code>), and
+ * the rules of each repository go to a file inside the repository, for in-repo
+ * authz (<code>AuthzSVNReposRelativeAccessFile</code>). Each file is published
+ * separately, so only the files whose content changed are replaced. The groups
+ * file is published before the rules files that reference its groups.
+ * Group deduplication does not apply to the split layout: shared group names
+ * change with their members, and a rules file still referencing a group
+ * dropped from the groups file would be rejected by SVN.</P>
+ *
+ * <P>With section compaction, the rendered file goes through
+ * <code>AuthzCompactor</code>, and the result is only published if
+ * <code>AuthzVerifier</code> finds the same effective permissions in both.
+ * Compaction does not apply to the split layout.</P>
+ *
+ * <P>Usage: <code>open()</code>, <code>writeProject()</code> for each project,
+ * then <code>close()</code>. Call <code>abort()</code> if any step fails, which
+ * leaves the live file untouched.</P>
+ *
+ * @author veilleux
+ */
+public class AuthzWriter {
+	/** Size of the output buffers, in characters */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** Default rules file of a repository in split layout, relative to the repository */
+	public static final String DEFAULT_RULES_FILENAME = "conf/authz";
+
+	/** Name of the AuthZ file to generate */
+	private String outputFilename;
+	/** Temporary file in which the AuthZ file is rendered */
+	private File renderFile = null;
+	/** Output for the header and groups, then the sections */
+	private Writer output = null;
+	/** Channel under <code>output</code>, used to append the spilled sections */
+	private FileChannel outputChannel = null;
+	/** Spill file for project sections */
+	private File spillFile = null;
+	/** Output for the project sections */
+	private Writer spill = null;
+	/** Number of projects written so far */
+	private int projectCount = 0;
+	/** Whether the live file was replaced by <code>close()</code> */
+	private boolean changed = false;
+	/** Whether projects with the same members share groups */
+	private boolean dedupGroups = false;
+	/** Member list of each shared group written so far, keyed by group name */
+	private HashMap<String, String> sharedGroups = new HashMap<String, String>();
+	/** Whether groups and per-repository rules go to separate files */
+	private boolean splitLayout = false;
+	/** Rules file of a repository in split layout, relative to the repository */
+	private String rulesFilename = DEFAULT_RULES_FILENAME;
+	/** Rendered rules files waiting to be published, in split layout */
+	private List<File> pendingRules = new ArrayList<File>();
+	/** Live rules file of each rendered rules file in <code>pendingRules</code> */
+	private List<File> pendingRulesTargets = new ArrayList<File>();
+	/** Number of files replaced by <code>close()</code> */
+	private int changedFileCount = 0;
+	/** Whether redundant sections are removed before publication */
+	private boolean compactSections = false;
+	/** Number of sections removed by compaction */
+	private int droppedSectionCount = 0;
+
+	/**
+	 * @param outputFilename - name of the AuthZ file to generate
+	 */
+	public AuthzWriter(String outputFilename) {
+		this.outputFilename = outputFilename;
+	}
+
+	/**
+	 * Creates the temporary render file, writes the file header and starts the
+	 * <code>[groups]</code> section.
+	 *
+	 * @throws IOException on file creation error
+	 */
+	public void open() throws IOException {
+		File outputFile = new File(outputFilename).getAbsoluteFile();
+		String charset = Charset.defaultCharset().name();
+
+		if (splitLayout) {
+			dedupGroups = false;
+		} else {
+			spillFile = File.createTempFile(".redmag-sections", ".tmp", outputFile.getParentFile());
+			spill = new BufferedWriter(Channels.newWriter(new FileOutputStream(spillFile).getChannel(), charset), BUFFER_SIZE);
+		}
+
+		renderFile = AuthzPublisher.createTempFile(outputFile);
+		outputChannel = new FileOutputStream(renderFile, false).getChannel();
+		output = new BufferedWriter(Channels.newWriter(outputChannel, charset), BUFFER_SIZE);
+
+		writeHeader(output);
+		output.write("[groups]\n");
+	}
+
+	/**
+	 * Writes the header common to all generated files.
+	 *
+	 * @param out - output of the file
+	 * @throws IOException on write error
+	 */
+	private static void writeHeader(Writer out) throws IOException {
+		out.write("#\n# AUTOMATICALLY GENERATED AUTHZ FILE\n" + "# By RedSvnTool " + RedmagMain.VERSION + "\n# *** DO NOT MODIFY BY HAND ***\n# Contact system administrator !\n");
+		out.write(AuthzPublisher.TIMESTAMP_PREFIX + (new Date()).toString() + "\n\n");
+	}
+
+	/**
+	 * Writes the groups and the section of a single repository. Projects
+	 * must be written in identifier order for the output to be canonical.
+	 *
+	 * @param identifier - project identifier, used as repository name
+	 * @param path - absolute path of the repository
+	 * @param readUsers - logins of the users with read-only access, in any order
+	 * @param readWriteUsers - logins of the users with read/write access, in any order
+	 * @throws IOException on write error
+	 */
+	public void writeProject(String identifier, String path, List<String> readUsers,
+			List<String> readWriteUsers) throws IOException {
+		if (splitLayout) {
+			writeRulesFile(identifier, path, readUsers, readWriteUsers);
+			projectCount++;
+			return;
+		}
+
+		spill.write(AuthzFormatter.formatSectionHeader(identifier, path));
+
+		if (!readUsers.isEmpty()) {
+			spill.write(AuthzFormatter.formatGroupRule(writeGroup(identifier + "-r", readUsers), "r"));
+		} else {
+			spill.write(String.format("# No read-only users for project \"%s\"\n", identifier));
+		}
+
+		if (!readWriteUsers.isEmpty()) {
+			spill.write(AuthzFormatter.formatGroupRule(writeGroup(identifier + "-rw", readWriteUsers), "rw"));
+		} else {
+			spill.write(String.format("# No read-write users for project \"%s\"\n", identifier));
+		}
+
+		if (!dedupGroups) {
+			output.write("\n");
+		}
+		spill.write("\n");
+		projectCount++;
+	}
+
+	/**
+	 * Writes the groups of a repository and renders its rules file, in split
+	 * layout. Without deduplication, both groups of the project are always
+	 * defined, even if empty, so that the rules file references the same
+	 * groups whatever the membership changes.
+	 *
+	 * @param identifier - project identifier, used as repository name
+	 * @param path - absolute path of the repository
+	 * @param readUsers - logins of the users with read-only access, in any order
+	 * @param readWriteUsers - logins of the users with read/write access, in any order
+	 * @throws IOException on write error
+	 */
+	private void writeRulesFile(String identifier, String path, List<String> readUsers,
+			List<String> readWriteUsers) throws IOException {
+		File target = new File(path, rulesFilename).getAbsoluteFile();
+		File parent = target.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("Cannot create directory " + parent.getPath());
+		}
+
+		File rendered = AuthzPublisher.createTempFile(target);
+		pendingRules.add(rendered);
+		pendingRulesTargets.add(target);
+
+		Writer rules = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rendered), Charset.defaultCharset()));
+		try {
+			writeHeader(rules);
+			rules.write(AuthzFormatter.formatRulesHeader(identifier, path));
+
+			if (!readUsers.isEmpty() || !dedupGroups) {
+				rules.write(AuthzFormatter.formatGroupRule(writeGroup(identifier + "-r", readUsers), "r"));
+			}
+			if (!readWriteUsers.isEmpty() || !dedupGroups) {
+				rules.write(AuthzFormatter.formatGroupRule(writeGroup(identifier + "-rw", readWriteUsers), "rw"));
+			}
+		} finally {
+			rules.close();
+		}
+	}
+
+	/**
+	 * Defines the group granting access to a project, unless an identical
+	 * shared group was already defined.
+	 *
+	 * @param projectGroup - name of the group of the project, without deduplication
+	 * @param logins - logins of the group members
+	 * @return the name of the group to reference in the project section
+	 * @throws IOException on write error
+	 */
+	private String writeGroup(String projectGroup, List<String> logins) throws IOException {
+		if (!dedupGroups) {
+			output.write(AuthzFormatter.formatGroup(projectGroup, logins));
+			return projectGroup;
+		}
+
+		String members = AuthzFormatter.formatMembers(logins);
+		String group = AuthzFormatter.sharedGroupName(members);
+
+		// Hash prefix collision between different member sets: disambiguate
+		while (sharedGroups.containsKey(group) && !sharedGroups.get(group).equals(members)) {
+			group = group + "x";
+		}
+
+		if (!sharedGroups.containsKey(group)) {
+			sharedGroups.put(group, members);
+			output.write(String.format("%s = %s\n", group, members));
+		}
+
+		return group;
+	}
+
+	/**
+	 * Writes the default policy, appends the spilled project sections
+	 * after it, then publishes the rendered file if it differs from the
+	 * live one. In split layout, publishes the groups file, then the rules
+	 * files that changed.
+	 *
+	 * @throws IOException on write error or if a file cannot be published
+	 */
+	public void close() throws IOException {
+		if (splitLayout) {
+			closeSplit();
+			return;
+		}
+
+		spill.close();
+		spill = null;
+
+		// Shared groups are not followed by a blank line each
+		if (dedupGroups) {
+			output.write("\n");
+		}
+		output.write("# Default policy is no access\n[/]\n* = \n\n");
+		output.flush();
+
+		// Append sections without going through the heap
+		FileChannel sections = new FileInputStream(spillFile).getChannel();
+		try {
+			long size = sections.size();
+			long position = 0;
+			while (position < size) {
+				position += sections.transferTo(position, size - position, outputChannel);
+			}
+		} finally {
+			sections.close();
+		}
+
+		output.close();
+		output = null;
+		spillFile.delete();
+		spillFile = null;
+
+		File rendered = renderFile;
+		renderFile = null;
+		if (compactSections) {
+			rendered = compact(rendered);
+		}
+		changed = AuthzPublisher.publish(rendered, new File(outputFilename).getAbsoluteFile());
+		changedFileCount = changed ? 1 : 0;
+	}
+
+	/**
+	 * Compacts a rendered file and verifies the result grants the same
+	 * permissions. The rendered file is removed in all cases.
+	 *
+	 * @param rendered - complete rendered file
+	 * @return the compacted file, in the same directory
+	 * @throws IOException on error, or if the compacted file grants different permissions
+	 */
+	private File compact(File rendered) throws IOException {
+		File compacted = AuthzPublisher.createTempFile(new File(outputFilename));
+		try {
+			droppedSectionCount = AuthzCompactor.compact(rendered, compacted);
+
+			List<String> differences = AuthzVerifier.compare(rendered, compacted);
+			if (!differences.isEmpty()) {
+				throw new IOException("Compaction changed effective permissions: " + differences.toString());
+			}
+		} catch (IOException e) {
+			compacted.delete();
+			throw e;
+		} finally {
+			rendered.delete();
+		}
+
+		return compacted;
+	}
+
+	/**
+	 * Publishes the groups file, then the rules file of each repository.
+	 *
+	 * @throws IOException on write error or if a file cannot be published
+	 */
+	private void closeSplit() throws IOException {
+		output.close();
+		output = null;
+
+		File rendered = renderFile;
+		renderFile = null;
+		changedFileCount = 0;
+		if (AuthzPublisher.publish(rendered, new File(outputFilename).getAbsoluteFile())) {
+			changedFileCount++;
+		}
+
+		// Publish one by one, so that a failure leaves the remaining ones to abort()
+		while (!pendingRules.isEmpty()) {
+			rendered = pendingRules.remove(0);
+			File target = pendingRulesTargets.remove(0);
+			if (AuthzPublisher.publish(rendered, target)) {
+				changedFileCount++;
+			}
+		}
+
+		changed = changedFileCount > 0;
+	}
+
+	/**
+	 * Releases all files after a failure. The live file is left untouched.
+	 */
+	public void abort() {
+		try {
+			if (spill != null) {
+				spill.close();
+			}
+		} catch (IOException e) {
+			// Nothing to do
+		}
+
+		try {
+			if (output != null) {
+				output.close();
+			}
+		} catch (IOException e) {
+			// Nothing to do
+		}
+
+		if (spillFile != null) {
+			spillFile.delete();
+		}
+
+		if (renderFile != null) {
+			renderFile.delete();
+		}
+
+		for (File rendered : pendingRules) {
+			rendered.delete();
+		}
+		pendingRules.clear();
+		pendingRulesTargets.clear();
+
+		spill = null;
+		output = null;
+		spillFile = null;
+		renderFile = null;
+	}
+
+	/**
+	 * @return the number of projects written so far
+	 */
+	public int getProjectCount() {
+		return projectCount;
+	}
+
+	/**
+	 * @return the number of distinct groups written in deduplication mode
+	 */
+	public int getSharedGroupCount() {
+		return sharedGroups.size();
+	}
+
+	/**
+	 * @param dedupGroups whether projects with the same members share groups. Must be set before
+	 * <code>open()</code>. Ignored in split layout.
+	 */
+	public void setDedupGroups(boolean dedupGroups) {
+		this.dedupGroups = dedupGroups;
+	}
+
+	/**
+	 * @param compactSections whether redundant sections are removed before publication. Ignored in split layout.
+	 */
+	public void setCompactSections(boolean compactSections) {
+		this.compactSections = compactSections;
+	}
+
+	/**
+	 * @return the number of sections removed by compaction
+	 */
+	public int getDroppedSectionCount() {
+		return droppedSectionCount;
+	}
+
+	/**
+	 * @param splitLayout whether groups and per-repository rules go to separate files. Must be set before <code>open()</code>.
+	 */
+	public void setSplitLayout(boolean splitLayout) {
+		this.splitLayout = splitLayout;
+	}
+
+	/**
+	 * @param rulesFilename the rules file of a repository in split layout, relative to the repository
+	 */
+	public void setRulesFilename(String rulesFilename) {
+		this.rulesFilename = rulesFilename;
+	}
+
+	/**
+	 * @return the number of files replaced by <code>close()</code>
+	 */
+	public int getChangedFileCount() {
+		return changedFileCount;
+	}
+
+	/**
+	 * @return whether <code>close()</code> replaced a live file, false if
+	 * all were already up to date
+	 */
+	public boolean isChanged() {
+		return changed;
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * File name: ReposCreationResult.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Outcome of the creation of a single SVN repository
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+/**
+ * Outcome of the creation of a single SVN repository by
+ * <code>SvnReposAccessProcessor.createMissingRepositories()</code>.
+ *
+ * @author veilleux
+ */
+public class ReposCreationResult {
+	/** Absolute path of the repository */
+	private String path;
+	/** Whether the repository was created */
+	private boolean success;
+	/** Number of creation attempts made */
+	private int attempts;
+	/** Error message of the last failed attempt, or null on success */
+	private String error;
+
+	/**
+	 * @param path - Absolute path of the repository
+	 * @param success - Whether the repository was created
+	 * @param attempts - Number of creation attempts made
+	 * @param error - Error message of the last failed attempt, or null on success
+	 */
+	public ReposCreationResult(String path, boolean success, int attempts, String error) {
+		this.path = path;
+		this.success = success;
+		this.attempts = attempts;
+		this.error = error;
+	}
+
+	/**
+	 * @return the absolute path of the repository
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return whether the repository was created
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return the number of creation attempts made
+	 */
+	public int getAttempts() {
+		return attempts;
+	}
+
+	/**
+	 * @return the error message of the last failed attempt, or null on success
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		if (success) {
+			return String.format("%s: SUCCESS (attempts: %d)", path, attempts);
+		} else {
+			return String.format("%s: FAILURE (attempts: %d) --> %s", path, attempts, error);
+		}
+	}
+}
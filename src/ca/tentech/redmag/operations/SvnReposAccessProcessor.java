@@ -38,89 +38,226 @@
 package ca.tentech.redmag.operations;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
 
-import ca.tentech.redmag.RedmagMain;
+import ca.tentech.redmag.db.ConnectionPool;
+import ca.tentech.redmag.db.JdbcRedmineDataLoader;
 import ca.tentech.redmag.db.RedmineDataLoader;
+import ca.tentech.redmag.db.RedmineMembershipHandler;
 import ca.tentech.redmag.db.RedmineProject;
-import ca.tentech.redmag.db.RedmineProjectMember;
+import ca.tentech.redmag.db.MembershipStore;
+import ca.tentech.redmag.db.RedmineMembership;
+import ca.tentech.redmag.db.SnapshotRedmineDataLoader;
 import ca.tentech.redmag.svn.MicroSvnReposAdmin;
+import ca.tentech.redmag.svn.ReposTemplate;
+import ca.tentech.redmag.svn.ReposValidationCache;
 
 /**
  * Processing class for generating SVN repository access
  * @author veilleux
  */
 public class SvnReposAccessProcessor {
+	/** Default maximum number of repositories created concurrently on a volume */
+	public static final int DEFAULT_CREATION_THREADS = 2;
+	/** Default number of incremental syncs between two full scans of membership fingerprints */
+	public static final int DEFAULT_FULL_SCAN_INTERVAL = 1;
+	/** Number of attempts to create a repository on transient errors */
+	private static final int CREATION_ATTEMPTS = 3;
+	/** Delay before the first retry of a repository creation, doubled on each retry (ms) */
+	private static final long CREATION_RETRY_DELAY = 200;
+	/** svnadmin flags for new repositories: compatible with SVN 1.4+ */
+	private static final String REPOS_CREATION_FLAGS = "--pre-1.5-compatible";
+	/** Suffix added to the AuthZ file name to name the incremental synchronization state file */
+	private static final String SYNC_STATE_SUFFIX = ".state";
+	
 	private String username = "";
 	private String password = "";
 	private String dbUrl = "";
+	private int dbPoolSize = ConnectionPool.DEFAULT_MAX_SIZE;
+	private long dbIdleTimeout = ConnectionPool.DEFAULT_IDLE_TIMEOUT;
+	private String snapshotFilename = null;
 	private List<Integer> readRoles = null;
 	private List<Integer> readWriteRoles = null;
 	private boolean verbose = false;
+	private boolean bulkLoad = false;
+	private boolean streaming = false;
+	private boolean deepVerify = false;
+	private boolean incremental = false;
+	private int fullScanInterval = DEFAULT_FULL_SCAN_INTERVAL;
+	/** Error that prevented the last AuthZ file from being saved, null if saved */
+	private IOException writeError = null;
+	private boolean dedupGroups = false;
+	private boolean splitLayout = false;
+	private boolean compactSections = false;
+	private String rulesFilename = AuthzWriter.DEFAULT_RULES_FILENAME;
+	private int validationThreads = Runtime.getRuntime().availableProcessors();
+	private int creationThreads = DEFAULT_CREATION_THREADS;
+	private boolean templateCreation = false;
 	private String outputFilename = "";
 	private String svnRoot = "";
 	
-	// Sets of paths for the creation of repositories and permissions
+	// Sets of paths for the creation of repositories and permissions.
+	// Sorted and thread-safe, as they are filled from worker threads.
 	private Set<String> validSvnPath;
 	private Set<String> existingSvnPath;
-	private HashMap<String, String> pathToId;
+	private Map<String, String> pathToId;
 	private List<RedmineProject> projects = null;
 	private RedmineDataLoader loader = null;
+	private ReposValidationCache validationCache = null;
+	private ReposTemplate reposTemplate = null;
+	private SyncState syncState = null;
+	/** Priviledge of each role ID, compiled from the role lists on first use */
+	private ReposRights[] roleTable = null;
 	
-	private static enum ReposRights {
+	/** Repository priviledges, in increasing order of precedence */
+	static enum ReposRights {
 		NONE,
 		READ,
 		READ_WRITE
 	};
 	
+	/**
+	 * Access of the members of a single project. A member holding several roles
+	 * in the project gets a single entry, at the highest priviledge of its roles.
+	 */
+	private static class MemberAccess {
+		/** Priviledge of each member, sorted by login */
+		private TreeMap<String, ReposRights> rights = new TreeMap<String, ReposRights>();
+		
+		/**
+		 * Grants a priviledge to a member, unless it already has a higher one.
+		 * 
+		 * @param login - member login
+		 * @param priviledge - priviledge granted by one of the member's roles
+		 */
+		public void grant(String login, ReposRights priviledge) {
+			if (priviledge == ReposRights.NONE) {
+				return;
+			}
+			
+			ReposRights current = rights.get(login);
+			if (current == null || priviledge.compareTo(current) > 0) {
+				rights.put(login, priviledge);
+			}
+		}
+		
+		/**
+		 * @param priviledge - priviledge to look for
+		 * @return the logins of the members having exactly this priviledge, sorted
+		 */
+		public List<String> getUsers(ReposRights priviledge) {
+			List<String> result = new ArrayList<String>();
+			for (Map.Entry<String, ReposRights> e : rights.entrySet()) {
+				if (e.getValue() == priviledge) {
+					result.add(e.getKey());
+				}
+			}
+			
+			return result;
+		}
+	}
+	
+	/** State of the path of a project repository */
+	private static enum ReposState {
+		VALID,
+		NON_SVN_DIRECTORY,
+		FILE,
+		MISSING
+	};
+	
 	/**
 	 * Default constructor for internal state only. Setters MUST be called for all options !
 	 */
 	public SvnReposAccessProcessor() {
 		super();
 		
-		validSvnPath = new HashSet<String>();
-		existingSvnPath = new HashSet<String>();
-		pathToId = new HashMap<String, String>();
+		validSvnPath = new ConcurrentSkipListSet<String>();
+		existingSvnPath = new ConcurrentSkipListSet<String>();
+		pathToId = new ConcurrentHashMap<String, String>();
 	}
 		
 	/**
 	 * Returns a permission determined by a project's role policy.
 	 * This project group policy is independent of users and
-	 * exceptions.
-	 * 
-	 * TODO: Fix what happens if a role is both READ and READ_WRITE
+	 * exceptions. A role listed as both READ and READ_WRITE grants
+	 * READ_WRITE: the highest priviledge always wins.
 	 * 
 	 * @param projectIdentifier - project identifier string (system-friendly)
 	 * @param roleId - role ID, valid in "roles" table
 	 * @return a ReposRights enum member specifying priviledge
 	 */
-	private ReposRights getRolePriviledge(String projectIdentifier, int roleId) {
-		// Check read roles
+	ReposRights getRolePriviledge(String projectIdentifier, int roleId) {
+		if (roleTable == null) {
+			roleTable = compileRoleTable(readRoles, readWriteRoles);
+		}
+		
+		// Default: NO rights
+		if (roleId < 0 || roleId >= roleTable.length) {
+			return ReposRights.NONE;
+		}
+		
+		return roleTable[roleId];
+	}
+	
+	/**
+	 * Compiles the role policy into a table indexed by role ID, so that
+	 * resolving the priviledge of a member row is a single array access.
+	 * 
+	 * @param readRoles - IDs of the roles granting read-only access
+	 * @param readWriteRoles - IDs of the roles granting read/write access
+	 * @return the priviledge of each role ID, up to the highest ID listed
+	 */
+	private static ReposRights[] compileRoleTable(List<Integer> readRoles, List<Integer> readWriteRoles) {
+		int maxRoleId = -1;
 		for (Integer role : readRoles) {
-			if (role.intValue() == roleId) {
-				return ReposRights.READ;
-			}
+			maxRoleId = Math.max(maxRoleId, role.intValue());
+		}
+		for (Integer role : readWriteRoles) {
+			maxRoleId = Math.max(maxRoleId, role.intValue());
 		}
 		
-		// Check read/write roles
+		ReposRights[] table = new ReposRights[maxRoleId + 1];
+		Arrays.fill(table, ReposRights.NONE);
+		for (Integer role : readRoles) {
+			grant(table, role.intValue(), ReposRights.READ);
+		}
 		for (Integer role : readWriteRoles) {
-			if (role.intValue() == roleId) {
-				return ReposRights.READ_WRITE;
-			}
+			grant(table, role.intValue(), ReposRights.READ_WRITE);
 		}
 		
-		// Default: NO rights
-		return ReposRights.NONE;
+		return table;
+	}
+	
+	/**
+	 * Raises the priviledge of a role in a role table, never lowering it.
+	 */
+	private static void grant(ReposRights[] table, int roleId, ReposRights rights) {
+		if (roleId >= 0 && rights.compareTo(table[roleId]) > 0) {
+			table[roleId] = rights;
+		}
 	}
 	
 	/**
@@ -132,7 +269,7 @@ public class SvnReposAccessProcessor {
 	 * @param separator - separator string to use between elements
 	 * @return a complete joined collection
 	 */
-	private String stringJoin(List<String> elements, String separator) {
+	static String stringJoin(List<String> elements, String separator) {
 		StringBuilder result = new StringBuilder();
 		int cnt = 0;
 		
@@ -146,6 +283,71 @@ public class SvnReposAccessProcessor {
 		return result.toString(); 
 	}
 	
+	/**
+	 * Returns the Redmine data loader, creating it on first use: the snapshot
+	 * loader if a snapshot file is set, the database loader otherwise. The same
+	 * loader (and its pooled connections) is shared by all operations of the processor.
+	 * 
+	 * @return the Redmine data loader
+	 * @throws SQLException on initialization error
+	 */
+	private RedmineDataLoader getLoader() throws SQLException {
+		if (loader == null) {
+			if (snapshotFilename != null) {
+				loader = new SnapshotRedmineDataLoader(new File(snapshotFilename));
+			} else {
+				loader = new JdbcRedmineDataLoader(dbUrl, username, password, dbPoolSize, dbIdleTimeout);
+			}
+		}
+		
+		return loader;
+	}
+	
+	/**
+	 * Captures the Redmine data into a snapshot file, which can be replayed
+	 * later with <code>setSnapshotFilename()</code>.
+	 * 
+	 * @param filename - snapshot file to write, compressed if it ends with ".gz"
+	 * @return the number of memberships written
+	 * @throws SQLException on database access or write error
+	 */
+	public int saveSnapshot(String filename) throws SQLException {
+		return SnapshotRedmineDataLoader.save(getLoader(), new File(filename));
+	}
+	
+	/**
+	 * Uses the given loader instead of connecting to the database with the
+	 * connection settings. The loader is closed by <code>close()</code>.
+	 * 
+	 * @param loader the Redmine data loader to use
+	 */
+	public void setLoader(RedmineDataLoader loader) {
+		this.loader = loader;
+	}
+	
+	/**
+	 * Registers an existing, valid repository without checking it on disk, as
+	 * <code>checkExistingRepositories()</code> would. Used by benchmarks.
+	 * 
+	 * @param identifier - project identifier
+	 * @param path - absolute path of the repository
+	 */
+	void addExistingRepository(String identifier, String path) {
+		pathToId.put(path, identifier);
+		validSvnPath.add(path);
+		existingSvnPath.add(path);
+	}
+	
+	/**
+	 * Releases the database connections held by the processor.
+	 */
+	public void close() {
+		if (loader != null) {
+			loader.close();
+			loader = null;
+		}
+	}
+	
 	/**
 	 * Check list of projects for existence of repositories. Sets internal state for
 	 * <code>generateMissingRepositories()</code> and <code>generateUserPermissions()</code> methods.
@@ -156,10 +358,13 @@ public class SvnReposAccessProcessor {
 	 * TODO: Fix this manually enforced calling order
 	 */
 	public void checkExistingRepositories() throws SQLException {
-		loader = new RedmineDataLoader(dbUrl,username,password);
+		// Forget the state of a previous sync cycle
+		validSvnPath.clear();
+		existingSvnPath.clear();
+		pathToId.clear();
 		
 		// Query Redmine for projects
-		projects = loader.getProjectList();
+		projects = getLoader().getProjectList();
 		
 		// Step 1: Create missing repositories
 		// -----------------------------------
@@ -167,7 +372,25 @@ public class SvnReposAccessProcessor {
 		// directory, exists as file, exists as directory (not SVN)
 		if (verbose) { System.out.println("*** Checking for missing repositories:"); }
 		
-		// Process all currently existing projects
+		// Validate all repositories concurrently
+		List<Future<ReposState>> states = new ArrayList<Future<ReposState>>(projects.size());
+		ExecutorService executor = Executors.newFixedThreadPool(validationThreads);
+		try {
+			for (RedmineProject project : projects) {
+				final File reposPathFile = new File(svnRoot + "/" + project.getIdentifier());
+				
+				states.add(executor.submit(new Callable<ReposState>() {
+					public ReposState call() {
+						return getReposState(reposPathFile);
+					}
+				}));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		
+		// Merge results in project order, so the outcome does not depend on scheduling
+		int index = 0;
 		for (RedmineProject project : projects) {
 			if (verbose) {System.out.printf("   Project \"%s\": ", project.getIdentifier());}
 		
@@ -178,143 +401,777 @@ public class SvnReposAccessProcessor {
 			pathToId.put(path, project.getIdentifier());
 			
 			// Manage different cases of file/directory existence
-			if (reposPathFile.exists()) {
-				if (reposPathFile.isDirectory()) {
-					if (MicroSvnReposAdmin.isValidRepos(reposPathFile)) {
-						// Case 1: exists as a valid SVN repository directory
-						validSvnPath.add(path);
-						existingSvnPath.add(path);
-						if (verbose) {System.out.printf("EXISTS at : %s\n", path);}
-					} else {
-						// Case 2: exists as a non-SVN directory
-						if (verbose) {
-							System.out.printf("MISSING at : %s\n", path);
-							System.out.printf("   --> ERROR: NON-SVN DIRECTORY WITH THAT NAME EXISTS !\n");
-						}
+			switch (waitForState(states.get(index++))) {
+				case VALID:
+					// Case 1: exists as a valid SVN repository directory
+					validSvnPath.add(path);
+					existingSvnPath.add(path);
+					if (verbose) {System.out.printf("EXISTS at : %s\n", path);}
+					break;
+				case NON_SVN_DIRECTORY:
+					// Case 2: exists as a non-SVN directory
+					if (verbose) {
+						System.out.printf("MISSING at : %s\n", path);
+						System.out.printf("   --> ERROR: NON-SVN DIRECTORY WITH THAT NAME EXISTS !\n");
 					}
-				} else {
+					break;
+				case FILE:
 					// Case 3: exists as a filename
 					if (verbose) {
 						System.out.printf("MISSING at : %s\n", reposPathFile.getAbsolutePath());
 						System.out.printf("   --> ERROR: FILE WITH THAT NAME EXISTS !\n");
 					}
+					break;
+				case MISSING:
+					// Case 4: does not exists (available)
+					validSvnPath.add(path);
+					if (verbose) { System.out.printf("MISSING at : %s\n", path); }
+					break;
+			}
+		}
+		
+		saveValidationCache();
+	}
+	
+	/**
+	 * Determines the state of a repository path. Called concurrently from the
+	 * validation threads.
+	 * 
+	 * @param reposPathFile - repository directory
+	 * @return the state of the path
+	 */
+	private ReposState getReposState(File reposPathFile) {
+		if (reposPathFile.exists()) {
+			if (reposPathFile.isDirectory()) {
+				if (isValidRepos(reposPathFile)) {
+					return ReposState.VALID;
+				} else {
+					return ReposState.NON_SVN_DIRECTORY;
 				}
-			} else { 
-				// Case 4: does not exists (available)
-				validSvnPath.add(path);
-				if (verbose) { System.out.printf("MISSING at : %s\n", path); }
+			} else {
+				return ReposState.FILE;
+			}
+		} else {
+			return ReposState.MISSING;
+		}
+	}
+	
+	/**
+	 * Waits for the result of a repository validation.
+	 * 
+	 * @param state - pending validation
+	 * @return the state of the repository path. A validation that failed with an
+	 * unexpected error is reported as a non-SVN directory, so it is left untouched.
+	 */
+	private ReposState waitForState(Future<ReposState> state) {
+		try {
+			return state.get();
+		} catch (InterruptedException e1) {
+			Thread.currentThread().interrupt();
+			return ReposState.NON_SVN_DIRECTORY;
+		} catch (ExecutionException e1) {
+			System.err.println("ERROR: Repository validation error: " + e1.getCause().toString());
+			return ReposState.NON_SVN_DIRECTORY;
+		}
+	}
+	
+	/**
+	 * Runs a complete synchronization: checks existing repositories, creates the
+	 * missing ones if requested and generates the AuthZ file. May be called
+	 * repeatedly on the same processor: the validation cache and the repository
+	 * template are kept warm between cycles, so that only repositories that changed
+	 * since the previous cycle are validated again. Pooled database connections
+	 * are reused if the idle timeout (<code>setDbIdleTimeout()</code>) is longer
+	 * than the time between cycles.
+	 * 
+	 * @param createMissing - whether to create missing repositories
+	 * @return the outcome of each repository creation (empty if none were created)
+	 * @throws SQLException on database error
+	 */
+	public List<ReposCreationResult> runSyncCycle(boolean createMissing) throws SQLException {
+		List<ReposCreationResult> results = new ArrayList<ReposCreationResult>();
+		
+		checkExistingRepositories();
+		if (createMissing) {
+			results = createMissingRepositories();
+		}
+		generateUserPermissions();
+		
+		return results;
+	}
+	
+	/**
+	 * Validates a repository directory. By default, only the on-disk layout is
+	 * checked. In deep verification mode, every revision is verified by svnadmin.
+	 * 
+	 * <P>Successful deep verifications are kept in the validation cache. A repository
+	 * whose youngest revision and <code>db/current</code> did not change since its
+	 * last successful verification is not verified again, and a repository that
+	 * was verified before only gets its new revisions verified. Failures are never
+	 * cached: a timeout, a lock or a repaired repository must not keep a repository
+	 * out of the AuthZ file until its next commit, which its users can then no longer
+	 * make. The structural check is cheap enough not to be cached.</P>
+	 * 
+	 * @param reposPathFile - repository directory
+	 * @return true if the directory holds a valid SVN repository
+	 */
+	private boolean isValidRepos(File reposPathFile) {
+		if (!deepVerify) {
+			return MicroSvnReposAdmin.isValidRepos(reposPathFile);
+		}
+		
+		String path = reposPathFile.getAbsolutePath();
+		long youngest = MicroSvnReposAdmin.getYoungestRevision(reposPathFile);
+		long currentModified = new File(reposPathFile, "db/current").lastModified();
+		ReposValidationCache.Entry cached = getValidationCache().get(path);
+		if (cached != null && !(cached.isDeep() && cached.isValid())) {
+			cached = null;
+		}
+		
+		// Unchanged since the last successful verification
+		if (cached != null && cached.getYoungestRevision() == youngest
+				&& cached.getCurrentModified() == currentModified) {
+			return true;
+		}
+		
+		boolean valid;
+		if (cached != null && youngest > cached.getYoungestRevision()) {
+			// Only verify the revisions committed since the last verification
+			valid = MicroSvnReposAdmin.verifyRepos(reposPathFile, cached.getYoungestRevision() + 1);
+		} else {
+			valid = MicroSvnReposAdmin.verifyRepos(reposPathFile);
+		}
+		
+		// Repositories without a readable head (BDB) are not cached
+		if (valid && youngest >= 0) {
+			getValidationCache().put(path, new ReposValidationCache.Entry(youngest, currentModified, true, true));
+		} else {
+			getValidationCache().remove(path);
+		}
+		
+		return valid;
+	}
+	
+	/**
+	 * Returns the repository validation cache, loading it from the SVN root on first use.
+	 * 
+	 * @return the validation cache
+	 */
+	private ReposValidationCache getValidationCache() {
+		if (validationCache == null) {
+			validationCache = new ReposValidationCache(svnRoot);
+			validationCache.load();
+		}
+		
+		return validationCache;
+	}
+	
+	/**
+	 * Saves the validation cache next to the repositories. Failing to save
+	 * it only means that repositories will be validated again next time.
+	 */
+	private void saveValidationCache() {
+		try {
+			getValidationCache().save();
+		} catch (IOException e1) {
+			if (verbose) {
+				System.out.printf("   --> WARNING: cannot save validation cache: %s\n", e1.toString());
 			}
 		}
 	}
 	
 	/**
 	 * Creates the missing repositories based on the Redmine project database
-	 * and given processor options.
+	 * and given processor options. Repositories are created concurrently, with at
+	 * most <code>creationThreads</code> creations running on each filesystem volume.
+	 * A creation that failed before anything was written to disk is retried.
+	 * In template mode, repositories are copies of a template repository created
+	 * once in the SVN root, so that no svnadmin process is started per repository.
+	 * 
+	 * @return the outcome of each creation, in repository path order
 	 */
-	public void createMissingRepositories() {		
+	public List<ReposCreationResult> createMissingRepositories() {		
 		if (verbose) { 
 			System.out.println("\n*** Creating missing repositories"); 
 		}
 
-		int numberCreated = 0;			
+		// Only create repositories that don't already exist
+		List<String> missing = new ArrayList<String>();
 		for (String path : validSvnPath) {	
-			// Only create repositories that don't already exist
 			if (!existingSvnPath.contains(path)) {
-				numberCreated++;
-				if (verbose) {
-					System.out.printf("   Creating a repository at \"%s\" : ", path );
+				missing.add(path);
+			}
+		}
+		
+		// One semaphore per volume holding repositories to create
+		Map<Object, Semaphore> volumePermits = new HashMap<Object, Semaphore>();
+		List<Semaphore> permits = new ArrayList<Semaphore>(missing.size());
+		for (String path : missing) {
+			Object volume = getVolume(new File(path));
+			Semaphore semaphore = volumePermits.get(volume);
+			if (semaphore == null) {
+				semaphore = new Semaphore(creationThreads, true);
+				volumePermits.put(volume, semaphore);
+			}
+			permits.add(semaphore);
+		}
+		
+		if (templateCreation && !missing.isEmpty() && reposTemplate == null) {
+			reposTemplate = new ReposTemplate(svnRoot, REPOS_CREATION_FLAGS);
+		}
+		
+		List<Future<ReposCreationResult>> pending = new ArrayList<Future<ReposCreationResult>>(missing.size());
+		if (!missing.isEmpty()) {
+			ExecutorService executor = Executors.newFixedThreadPool(
+					Math.min(missing.size(), creationThreads * volumePermits.size()));
+			try {
+				for (int i = 0; i < missing.size(); i++) {
+					final String path = missing.get(i);
+					final Semaphore semaphore = permits.get(i);
+					
+					pending.add(executor.submit(new Callable<ReposCreationResult>() {
+						public ReposCreationResult call() throws InterruptedException {
+							semaphore.acquire();
+							try {
+								return createRepos(path);
+							} finally {
+								semaphore.release();
+							}
+						}
+					}));
 				}
-				
-				try {
-					// Create a repos compatible with SVN 1.4+, generate a uuid, do not overwrite
-					MicroSvnReposAdmin.createRepos(new File(path), "--pre-1.5-compatible");
-					if (verbose) { System.out.printf("SUCCESS !\n"); }
-					existingSvnPath.add(path);
-				} catch (IOException e) {
-					if (verbose) { System.out.printf("FAILURE !\n   -->%s\n", e.toString()); }
+			} finally {
+				executor.shutdown();
+			}
+		}
+		
+		// Report results in path order
+		List<ReposCreationResult> results = new ArrayList<ReposCreationResult>(missing.size());
+		for (int i = 0; i < missing.size(); i++) {
+			ReposCreationResult result;
+			try {
+				result = pending.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result = new ReposCreationResult(missing.get(i), false, 0, e.toString());
+			} catch (ExecutionException e) {
+				result = new ReposCreationResult(missing.get(i), false, 0, e.getCause().toString());
+			}
+			results.add(result);
+			
+			if (verbose) {
+				System.out.printf("   Creating a repository at \"%s\" : ", result.getPath());
+				if (result.isSuccess()) {
+					System.out.printf("SUCCESS !\n");
+				} else {
+					System.out.printf("FAILURE !\n   -->%s\n", result.getError());
 				}
 			}
 		}
 		
-		if (verbose && numberCreated == 0) {
+		if (verbose && missing.isEmpty()) {
 			System.out.println("    SUCCESS: None to create !");
 		}
+		
+		return results;
+	}
+	
+	/**
+	 * Creates a single repository, retrying on transient errors. Called
+	 * concurrently from the creation threads.
+	 * 
+	 * @param path - absolute path of the repository to create
+	 * @return the outcome of the creation
+	 * @throws InterruptedException if interrupted while waiting to retry
+	 */
+	private ReposCreationResult createRepos(String path) throws InterruptedException {
+		File reposPathFile = new File(path);
+		String error = null;
+		
+		int attempt = 0;
+		while (attempt < CREATION_ATTEMPTS) {
+			attempt++;
+			try {
+				// Create a repos compatible with SVN 1.4+, generate a uuid, do not overwrite
+				if (reposTemplate != null) {
+					reposTemplate.createRepos(reposPathFile);
+				} else {
+					MicroSvnReposAdmin.createRepos(reposPathFile, REPOS_CREATION_FLAGS);
+				}
+				existingSvnPath.add(path);
+				return new ReposCreationResult(path, true, attempt, null);
+			} catch (IOException e) {
+				error = e.toString();
+			}
+			
+			// Only retry if the failure left nothing behind (fork failure,
+			// resource temporarily unavailable, ...): svnadmin never overwrites
+			if (reposPathFile.exists()) {
+				break;
+			}
+			
+			if (attempt < CREATION_ATTEMPTS) {
+				Thread.sleep(CREATION_RETRY_DELAY << (attempt - 1));
+			}
+		}
+		
+		return new ReposCreationResult(path, false, attempt, error);
+	}
+	
+	/**
+	 * Returns the filesystem volume on which a repository will be created.
+	 * 
+	 * @param reposPathFile - repository directory (not existing yet)
+	 * @return an object identifying the volume, equal for paths on the same volume
+	 */
+	private static Object getVolume(File reposPathFile) {
+		File parent = reposPathFile.getAbsoluteFile().getParentFile();
+		
+		try {
+			return Files.getFileStore(parent.toPath());
+		} catch (IOException e) {
+			// Missing parent: creation will fail anyway
+			return parent.getPath();
+		}
 	}
 	
 	/**
 	 * Generate an AuthZ permission file at the location specified by the
-	 * <code>outputFile</code> property.
+	 * <code>outputFile</code> property. In bulk mode, all project members are
+	 * gathered through a single query instead of one query per repository.
+	 * In streaming mode, the sorted membership cursor is walked once and each
+	 * project is written out as soon as its run of rows ends. In incremental mode,
+	 * only the projects changed since the last successful sync are read.
+	 * In all modes, projects are written in identifier order and users are
+	 * sorted within each group. With group deduplication, projects with the
+	 * same members share a single group. In split layout, the AuthZ file only
+	 * holds groups and each repository gets its own rules file. Write errors are
+	 * only reported in verbose mode, and through <code>getWriteError()</code>.
 	 */
 	public void generateUserPermissions() throws SQLException { 
-		StringBuilder groups = new StringBuilder("[groups]\n");
-		StringBuilder sections = new StringBuilder();
+		writeError = null;
+		AuthzWriter writer = new AuthzWriter(outputFilename);
+		writer.setDedupGroups(dedupGroups);
+		writer.setSplitLayout(splitLayout);
+		writer.setRulesFilename(rulesFilename);
+		writer.setCompactSections(compactSections);
+		
+		// In incremental mode, all database work is done before writing
+		Timestamp syncStart = null;
+		if (incremental) {
+			syncStart = refreshSyncState();
+		}
+		
+		try {
+			writer.open();
+			
+			if (incremental) {
+				writeSyncState(writer);
+			} else if (streaming) {
+				streamUserPermissions(writer);
+			} else {
+				collectUserPermissions(writer);
+			}
+			
+			// Step 4: Save AuthZ file
+			writer.close();
+			if (verbose) {
+				if (dedupGroups) {
+					System.out.printf("\n*** Deduplicated groups: %d shared groups for %d projects\n",
+							writer.getSharedGroupCount(), writer.getProjectCount());
+				}
+				if (compactSections && !splitLayout) {
+					System.out.printf("\n*** Compaction: %d redundant sections removed, permissions verified\n",
+							writer.getDroppedSectionCount());
+				}
+				if (splitLayout) {
+					System.out.printf("\n*** Split layout: %d of %d files changed\n",
+							writer.getChangedFileCount(), writer.getProjectCount() + 1);
+				}
+				if (writer.isChanged()) {
+					System.out.printf("\n*** SAVED Authorization file: %s\n",outputFilename);
+				} else {
+					System.out.printf("\n*** UNCHANGED Authorization file: %s\n",outputFilename);
+				}
+			}
+			
+			// The next incremental sync starts from this one
+			if (incremental) {
+				commitSyncState(syncStart);
+			}
+		} catch (IOException e1) {
+			writer.abort();
+			writeError = e1;
+			if (verbose) {
+				System.out.printf("\n*** ERROR SAVING AUTHZ FILE \"%s\": %s\n",outputFilename, e1.toString());
+			}
+		} catch (SQLException e1) {
+			writer.abort();
+			
+			// Output errors raised from the streaming callback
+			if (e1.getCause() instanceof IOException) {
+				writeError = (IOException) e1.getCause();
+				if (verbose) {
+					System.out.printf("\n*** ERROR SAVING AUTHZ FILE \"%s\": %s\n",outputFilename, e1.getCause().toString());
+				}
+			} else {
+				throw e1;
+			}
+		}
+	}
+	
+	/**
+	 * Brings the incremental synchronization state up to date with the database.
+	 * Only the projects changed since the watermark of the last successful sync
+	 * are read again: projects updated, projects with new members or members
+	 * whose account was updated, and projects whose membership fingerprint
+	 * changed (removed members, role changes). Without watermark, or if the
+	 * read and read/write roles changed since the state was saved, all projects
+	 * are read.
+	 * 
+	 * <P>Removed members and role changes leave no timestamp behind. Removed
+	 * members are found on every sync by comparing the number of members of each
+	 * project, counted from the project_id index. Role changes are only found by
+	 * a scan of the fingerprints of all projects, which reads the whole members
+	 * table. By default this scan runs on every sync. With a larger
+	 * <code>fullScanInterval</code>, it runs once every that many syncs, and role
+	 * changes (including downgrades) may take up to that many syncs to be applied.
+	 * In between, only the fingerprints of the projects read again are queried.</P>
+	 * 
+	 * @return the database time at which this synchronization started
+	 * @throws SQLException on database error
+	 */
+	private Timestamp refreshSyncState() throws SQLException {
+		SyncState state = getSyncState();
+		
+		// Access lists computed for other roles must all be rebuilt
+		String roleHash = getRoleHash();
+		if (!roleHash.equals(state.getRoleHash())) {
+			state.clear();
+			state.setRoleHash(roleHash);
+		}
+		
+		// Capture the watermark first: changes made during the sync are seen next time
+		Timestamp syncStart = getLoader().getDatabaseTime();
+		Set<String> changed = null;
+		if (state.getWatermark() != null) {
+			changed = getLoader().getProjectsChangedSince(state.getWatermark());
+		}
+		boolean fullScan = changed == null || state.getSyncsSinceFullScan() + 1 >= fullScanInterval;
+		HashMap<String, String> fingerprints = null;
+		if (fullScan) {
+			fingerprints = getLoader().getMembershipFingerprints();
+		}
+		HashMap<String, Integer> counts = getLoader().getMemberCounts();
+		
+		// Find the existing repositories whose access may have changed
+		Set<String> identifiers = new TreeSet<String>(existingIdentifiers());
+		final HashMap<String, MemberAccess> accesses = new HashMap<String, MemberAccess>();
+		for (String identifier : identifiers) {
+			SyncState.ProjectAccess access = state.get(identifier);
+			
+			if (changed == null || access == null || changed.contains(identifier)
+					|| access.getMemberCount() != getMemberCount(counts, identifier)
+					|| (fullScan && !access.getFingerprint().equals(getFingerprint(fingerprints, identifier)))) {
+				accesses.put(identifier, new MemberAccess());
+			}
+		}
+		
+		// Between full scans, only the projects read again need a new fingerprint
+		if (!fullScan) {
+			fingerprints = getLoader().getMembershipFingerprints(accesses.keySet());
+		}
+		
+		// Reload the members of affected projects only
+		getLoader().streamMembershipsByProjects(accesses.keySet(), new RedmineMembershipHandler() {
+			public void handleMembership(RedmineMembership member) {
+				String identifier = member.getProjectId();
+				if (accesses.containsKey(identifier)) {
+					addMember(identifier, member, accesses.get(identifier));
+				}
+			}
+		});
+		
+		for (Map.Entry<String, MemberAccess> e : accesses.entrySet()) {
+			String identifier = e.getKey();
+			state.put(identifier, new SyncState.ProjectAccess(getFingerprint(fingerprints, identifier),
+					getMemberCount(counts, identifier), e.getValue().getUsers(ReposRights.READ),
+					e.getValue().getUsers(ReposRights.READ_WRITE)));
+		}
+		state.retain(identifiers);
+		state.setSyncsSinceFullScan(fullScan ? 0 : state.getSyncsSinceFullScan() + 1);
+		
+		if (verbose) {
+			System.out.printf("\n*** Incremental sync: %d of %d projects changed%s\n", accesses.size(), identifiers.size(),
+					fullScan ? " (full fingerprint scan)" : "");
+		}
+		
+		return syncStart;
+	}
+	
+	/**
+	 * @param fingerprints - membership fingerprints, keyed by project identifier
+	 * @param identifier - project identifier
+	 * @return the fingerprint of the project, or an empty string for a project unknown to Redmine
+	 */
+	private static String getFingerprint(HashMap<String, String> fingerprints, String identifier) {
+		return fingerprints.containsKey(identifier) ? fingerprints.get(identifier) : "";
+	}
+	
+	/**
+	 * @param counts - number of members, keyed by project identifier
+	 * @param identifier - project identifier
+	 * @return the number of members of the project, 0 for a project unknown to Redmine
+	 */
+	private static int getMemberCount(HashMap<String, Integer> counts, String identifier) {
+		return counts.containsKey(identifier) ? counts.get(identifier).intValue() : 0;
+	}
+	
+	/**
+	 * Returns a hash of the sorted read and read/write roles, identifying the
+	 * roles the access lists of the synchronization state are computed for.
+	 * 
+	 * @return the role hash, in hexadecimal
+	 */
+	private String getRoleHash() {
+		List<Integer> read = new ArrayList<Integer>(readRoles);
+		List<Integer> readWrite = new ArrayList<Integer>(readWriteRoles);
+		Collections.sort(read);
+		Collections.sort(readWrite);
+		
+		CRC32 crc = new CRC32();
+		crc.update(("r:" + read + " rw:" + readWrite).getBytes());
+		
+		return Long.toHexString(crc.getValue());
+	}
+	
+	/**
+	 * Writes the permissions of every existing repository from the incremental
+	 * synchronization state, in identifier order.
+	 * 
+	 * @param writer - opened AuthZ writer
+	 * @throws IOException on write error
+	 */
+	private void writeSyncState(AuthzWriter writer) throws IOException {
+		SyncState state = getSyncState();
+		
+		for (Map.Entry<String, String> e : sortedRepositories().entrySet()) {
+			SyncState.ProjectAccess access = state.get(e.getKey());
+			writer.writeProject(e.getKey(), e.getValue(), access.getReadUsers(), access.getReadWriteUsers());
+		}
+	}
+	
+	/**
+	 * Advances the watermark once the AuthZ file was saved and persists the
+	 * synchronization state. If the state cannot be saved, the next run
+	 * simply does more work.
+	 * 
+	 * @param syncStart - database time at which the synchronization started
+	 */
+	private void commitSyncState(Timestamp syncStart) {
+		SyncState state = getSyncState();
+		state.setWatermark(syncStart);
+		
+		try {
+			state.save();
+		} catch (IOException e1) {
+			if (verbose) {
+				System.out.printf("   --> WARNING: cannot save synchronization state: %s\n", e1.toString());
+			}
+		}
+	}
+	
+	/**
+	 * Returns the incremental synchronization state, loading it on first use from
+	 * the state file kept next to the AuthZ file.
+	 * 
+	 * @return the synchronization state
+	 */
+	private SyncState getSyncState() {
+		if (syncState == null) {
+			syncState = new SyncState(new File(outputFilename + SYNC_STATE_SUFFIX));
+			syncState.load();
+		}
+		
+		return syncState;
+	}
+	
+	/**
+	 * Returns the existing repositories in the order in which they are written
+	 * to the AuthZ file, so that the output does not depend on the iteration
+	 * order of the repository sets.
+	 * 
+	 * @return the paths of the existing repositories, keyed and sorted by project identifier
+	 */
+	private TreeMap<String, String> sortedRepositories() {
+		TreeMap<String, String> result = new TreeMap<String, String>();
+		for (String path : existingSvnPath) {
+			result.put(pathToId.get(path), path);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the identifiers of the existing repositories
+	 */
+	private Set<String> existingIdentifiers() {
+		Set<String> result = new HashSet<String>();
 		for (String path : existingSvnPath) {
+			result.add(pathToId.get(path));
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Writes the permissions of every existing repository, gathering the members
+	 * of each project either through one query per project or, in bulk mode,
+	 * from a single query loaded into a dictionary-encoded membership store.
+	 * 
+	 * @param writer - opened AuthZ writer
+	 * @throws SQLException on database error
+	 * @throws IOException on write error
+	 */
+	private void collectUserPermissions(AuthzWriter writer) throws SQLException, IOException {
+		// In bulk mode, members of all projects are fetched at once
+		MembershipStore allMembers = null;
+		if (bulkLoad) {
+			allMembers = getLoader().loadMembershipStore();
+			if (verbose) {
+				System.out.printf("\n*** Bulk-loaded %d memberships of %d users in %d projects\n",
+						allMembers.size(), allMembers.getLoginCount(), allMembers.getProjectCount());
+			}
+		}
+		
+		for (Map.Entry<String, String> repos : sortedRepositories().entrySet()) {
 			// Step 1: Query redmine databse for members of the project
-			String identifier = pathToId.get(path);
-			List<RedmineProjectMember> members = loader.gatherUsersByProject(identifier);
-			List<String> readUsers = new LinkedList<String>();
-			List<String> readWriteUsers = new LinkedList<String>();
+			String identifier = repos.getKey();
+			String path = repos.getValue();
+			MemberAccess access = new MemberAccess();
 			
 			// Step 2: Iterate through project members, filling access lists
 			// TODO: If user is in an exception or a subpath is an exception, do NOT give any blanket rights
-			for (RedmineProjectMember member : members) {
-				switch (getRolePriviledge(identifier, member.getRoleId())) {
-					case NONE:
-						// NO rights for none priviledge
-						break;
-					case READ:
-						readUsers.add(member.getLogin());
-						break;
-					case READ_WRITE:
-						readWriteUsers.add(member.getLogin());
-						break;
+			if (allMembers != null) {
+				MembershipStore.Cursor cursor = allMembers.cursor(identifier);
+				while (cursor.next()) {
+					access.grant(cursor.getLogin(), getRolePriviledge(identifier, cursor.getRoleId()));
+				}
+			} else {
+				for (RedmineMembership member : getLoader().gatherMemberships(identifier)) {
+					addMember(identifier, member, access);
 				}
 			}
 			
 			// Step 3: Generate groups and project sections from access lists
-			sections.append("# Permissions for repos at " + path + "\n");
-			sections.append(String.format("[%s:/]\n* = \n", identifier));
+			writer.writeProject(identifier, path, access.getUsers(ReposRights.READ),
+					access.getUsers(ReposRights.READ_WRITE));
+		}
+	}
+	
+	/**
+	 * Writes the permissions of every existing repository in a single pass over
+	 * the membership cursor, which is ordered by project identifier. Repositories
+	 * are merged with the cursor in identifier order, so that projects without
+	 * members still get their (empty) section.
+	 * 
+	 * @param writer - opened AuthZ writer
+	 * @throws SQLException on database error, or wrapping an IOException on write error
+	 * @throws IOException on write error
+	 */
+	private void streamUserPermissions(AuthzWriter writer) throws SQLException, IOException {
+		ProjectRunHandler handler = new ProjectRunHandler(writer);
+		
+		getLoader().streamMemberships("", handler);
+		handler.finish();
+	}
+	
+	/**
+	 * Membership cursor consumer for the streaming mode. Accumulates the access
+	 * lists of the current project and writes them out when its run of rows ends.
+	 * Only the current run is held in memory.
+	 */
+	private class ProjectRunHandler implements RedmineMembershipHandler {
+		private AuthzWriter writer;
+		/** Identifiers of existing repositories, sorted like the cursor */
+		private String [] identifiers;
+		private Map<String, String> idToPath;
+		/** Index of the next repository to write in identifiers */
+		private int next = 0;
+		/** Project of the current run of rows */
+		private String identifier = null;
+		private MemberAccess access = new MemberAccess();
+		
+		public ProjectRunHandler(AuthzWriter writer) {
+			this.writer = writer;
 			
-			if (!readUsers.isEmpty()) {
-				groups.append(String.format("%s-r = %s\n",
-					identifier, stringJoin(readUsers,", ")));
-				sections.append(String.format("@%s-r = r\n", identifier));
-			} else {
-				sections.append(String.format("# No read-only users for project \"%s\"\n", identifier));
+			idToPath = sortedRepositories();
+			identifiers = idToPath.keySet().toArray(new String [] {});
+		}
+		
+		public void handleMembership(RedmineMembership member) throws IOException {
+			if (!member.getProjectId().equals(identifier)) {
+				flushRun();
+				identifier = member.getProjectId();
 			}
 			
-			if (!readWriteUsers.isEmpty()) {
-				groups.append(String.format("%s-rw = %s\n",
-					identifier, stringJoin(readWriteUsers,", ")));
-				sections.append(String.format("@%s-rw = rw\n", identifier));
-			} else {
-				sections.append(String.format("# No read-write users for project \"%s\"\n", identifier));
+			addMember(identifier, member, access);
+		}
+		
+		/**
+		 * Writes the last run and the remaining repositories without members
+		 * 
+		 * @throws IOException on write error
+		 */
+		public void finish() throws IOException {
+			flushRun();
+			identifier = null;
+			writeUntil(identifiers.length);
+		}
+		
+		/**
+		 * Writes the current run, preceded by the repositories without members sorting before it
+		 */
+		private void flushRun() throws IOException {
+			if (identifier != null) {
+				int index = Arrays.binarySearch(identifiers, identifier);
+				
+				// Rows of projects without a repository are dropped
+				if (index >= 0) {
+					writeUntil(index);
+					writer.writeProject(identifier, idToPath.get(identifier), access.getUsers(ReposRights.READ),
+							access.getUsers(ReposRights.READ_WRITE));
+					next = Math.max(next, index + 1);
+				}
 			}
 			
-			groups.append("\n");
-			sections.append("\n");
+			access = new MemberAccess();
 		}
 		
-		// Step 4: Save AuthZ file
-		try {
-			FileWriter outputFileWriter = new FileWriter(outputFilename, false);
-			outputFileWriter.append("#\n# AUTOMATICALLY GENERATED AUTHZ FILE\n" + "# By RedSvnTool " + RedmagMain.VERSION + "\n# *** DO NOT MODIFY BY HAND ***\n# Contact system administrator !\n");
-			outputFileWriter.append("# File generated on: " + (new Date()).toString() + "\n\n");
-			outputFileWriter.append(groups.toString());
+		/**
+		 * Writes empty sections for the repositories before <code>end</code> not yet written
+		 */
+		private void writeUntil(int end) throws IOException {
+			List<String> none = new LinkedList<String>();
 			
-			outputFileWriter.append("# Default policy is no access\n[/]\n* = \n\n");
-			outputFileWriter.append(sections.toString());
-			if (verbose) {
-				System.out.printf("\n*** SAVED Authorization file: %s\n",outputFilename);
-			}
-			outputFileWriter.close();
-		} catch (IOException e1) {
-			if (verbose) {
-				System.out.printf("\n*** ERROR SAVING AUTHZ FILE \"%s\": %s\n",outputFilename, e1.toString());
+			for (; next < end; next++) {
+				writer.writeProject(identifiers[next], idToPath.get(identifiers[next]), none, none);
 			}
 		}
 	}
-
+	
+	/**
+	 * Grants a project member the priviledge of its role. A member already
+	 * holding a higher priviledge through another role keeps it.
+	 * 
+	 * @param identifier - project identifier
+	 * @param member - project member
+	 * @param access - access of the project members to fill
+	 */
+	private void addMember(String identifier, RedmineMembership member, MemberAccess access) {
+		access.grant(member.getLogin(), getRolePriviledge(identifier, member.getRoleId()));
+	}
+	
 	/**
 	 * Draw a separator line for a table with the specified column <code>lenghts</code>,
 	 * using the <code>style</code> line-drawing character.
@@ -381,8 +1238,7 @@ public class SvnReposAccessProcessor {
 	public String getRoleList() throws SQLException { 
 		StringBuilder rolesTable = new StringBuilder();
 		
-		loader = new RedmineDataLoader(dbUrl,username,password);
-		HashMap<Integer, String> roles = loader.getRoleList();
+		HashMap<Integer, String> roles = getLoader().getRoleList();
 		
 		// Obtain the longest role name length
 		int maxLength = 0;
@@ -433,17 +1289,39 @@ public class SvnReposAccessProcessor {
 	public void setDbUrl(String dbUrl) {
 		this.dbUrl = dbUrl;
 	}
+	/**
+	 * @param dbPoolSize the maximum number of pooled database connections to set
+	 */
+	public void setDbPoolSize(int dbPoolSize) {
+		this.dbPoolSize = dbPoolSize;
+	}
+	/**
+	 * @param dbIdleTimeout the time after which an idle pooled database connection
+	 * is closed (ms) to set. Must be set before the first database access.
+	 */
+	public void setDbIdleTimeout(long dbIdleTimeout) {
+		this.dbIdleTimeout = dbIdleTimeout;
+	}
+	/**
+	 * @param snapshotFilename the snapshot file to read Redmine data from instead
+	 * of the database, or null to use the database
+	 */
+	public void setSnapshotFilename(String snapshotFilename) {
+		this.snapshotFilename = snapshotFilename;
+	}
 	/**
 	 * @param readRoles the readRoles to set
 	 */
 	public void setReadRoles(List<Integer> readRoles) {
 		this.readRoles = readRoles;
+		this.roleTable = null;
 	}
 	/**
 	 * @param readWriteRoles the readWriteRoles to set
 	 */
 	public void setReadWriteRoles(List<Integer> readWriteRoles) {
 		this.readWriteRoles = readWriteRoles;
+		this.roleTable = null;
 	}
 	/**
 	 * @param verbose the verbose to set
@@ -451,6 +1329,86 @@ public class SvnReposAccessProcessor {
 	public void setVerbose(boolean verbose) {
 		this.verbose = verbose;
 	}
+	/**
+	 * @param bulkLoad whether to load the members of all projects in a single query
+	 */
+	public void setBulkLoad(boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+	}
+	/**
+	 * @param streaming whether to write the AuthZ file while walking the membership cursor
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+	/**
+	 * @param deepVerify whether to run a full svnadmin verify on existing repositories
+	 */
+	public void setDeepVerify(boolean deepVerify) {
+		this.deepVerify = deepVerify;
+	}
+	/**
+	 * @param validationThreads the number of repositories validated concurrently to set
+	 */
+	public void setValidationThreads(int validationThreads) {
+		this.validationThreads = validationThreads;
+	}
+	/**
+	 * @param creationThreads the number of repositories created concurrently on each volume to set
+	 */
+	public void setCreationThreads(int creationThreads) {
+		this.creationThreads = creationThreads;
+	}
+	/**
+	 * @param templateCreation whether to create repositories by copying a template repository
+	 */
+	public void setTemplateCreation(boolean templateCreation) {
+		this.templateCreation = templateCreation;
+	}
+	/**
+	 * @param compactSections whether to remove redundant sections, checking the permissions are unchanged
+	 */
+	public void setCompactSections(boolean compactSections) {
+		this.compactSections = compactSections;
+	}
+	/**
+	 * @param splitLayout whether to write a groups file plus one rules file per repository
+	 */
+	public void setSplitLayout(boolean splitLayout) {
+		this.splitLayout = splitLayout;
+	}
+	/**
+	 * @param rulesFilename the rules file of a repository in split layout, relative to the repository
+	 */
+	public void setRulesFilename(String rulesFilename) {
+		this.rulesFilename = rulesFilename;
+	}
+	/**
+	 * @param dedupGroups whether projects with the same members share a single group
+	 */
+	public void setDedupGroups(boolean dedupGroups) {
+		this.dedupGroups = dedupGroups;
+	}
+	/**
+	 * @param incremental whether to only read the projects changed since the last successful sync
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+	/**
+	 * @return the error that prevented the last <code>generateUserPermissions()</code>
+	 * from saving the AuthZ file, or null if it was saved
+	 */
+	public IOException getWriteError() {
+		return writeError;
+	}
+	/**
+	 * @param fullScanInterval the number of incremental syncs between two full scans
+	 * of membership fingerprints to set, 1 to scan on every sync
+	 */
+	public void setFullScanInterval(int fullScanInterval) {
+		this.fullScanInterval = fullScanInterval;
+	}
 	/**
 	 * @param outputFilename the outputFilename to set
 	 */
@@ -0,0 +1,327 @@
+/**
+ * File name: SyncState.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Persistent state of incremental synchronization: watermark of the
+ * last successful sync and access lists of every repository
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.operations;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * <P>State of incremental synchronization. Holds the database time at which
+ * the last successful synchronization started (the watermark) and, for every
+ * repository, the membership fingerprint and access lists computed then.
+ * Only projects that changed since the watermark need to be read again from
+ * the database; the sections of the others are rebuilt from this state.</P>
+ *
+ * <P>Access lists depend on the roles granting read and read/write access.
+ * The state also holds a hash of these roles: a state computed for other
+ * roles must be cleared, causing a full synchronization.</P>
+ *
+ * <P>The state file is rewritten atomically (temporary file + rename). A missing
+ * or unreadable state file means a full synchronization.</P>
+ *
+ * @author veilleux
+ */
+public class SyncState {
+	/** Separator of logins in access lists (cannot appear in Redmine logins) */
+	private static final String LOGIN_SEPARATOR = " ";
+
+	/** State file */
+	private File stateFile;
+	/** Database time at the start of the last successful sync, null if none */
+	private Timestamp watermark = null;
+	/** Hash of the read and read/write roles the access lists were computed for, null if unknown */
+	private String roleHash = null;
+	/** Number of successful syncs since the last full scan of membership fingerprints */
+	private int syncsSinceFullScan = 0;
+	/** Access of every repository, keyed (and sorted) by project identifier */
+	private TreeMap<String, ProjectAccess> projects = new TreeMap<String, ProjectAccess>();
+
+	/**
+	 * Access lists of a repository, along with the membership fingerprint and
+	 * member count they were computed from
+	 */
+	public static class ProjectAccess {
+		private String fingerprint;
+		private int memberCount;
+		private List<String> readUsers;
+		private List<String> readWriteUsers;
+
+		/**
+		 * @param fingerprint - membership fingerprint of the project
+		 * @param memberCount - number of members of the project, -1 if unknown
+		 * @param readUsers - logins of the users with read-only access
+		 * @param readWriteUsers - logins of the users with read/write access
+		 */
+		public ProjectAccess(String fingerprint, int memberCount, List<String> readUsers, List<String> readWriteUsers) {
+			this.fingerprint = fingerprint;
+			this.memberCount = memberCount;
+			this.readUsers = readUsers;
+			this.readWriteUsers = readWriteUsers;
+		}
+
+		/**
+		 * @return the membership fingerprint of the project
+		 */
+		public String getFingerprint() {
+			return fingerprint;
+		}
+
+		/**
+		 * @return the number of members of the project, -1 if unknown
+		 */
+		public int getMemberCount() {
+			return memberCount;
+		}
+
+		/**
+		 * @return the logins of the users with read-only access
+		 */
+		public List<String> getReadUsers() {
+			return readUsers;
+		}
+
+		/**
+		 * @return the logins of the users with read/write access
+		 */
+		public List<String> getReadWriteUsers() {
+			return readWriteUsers;
+		}
+	}
+
+	/**
+	 * @param stateFile - file in which the state is persisted
+	 */
+	public SyncState(File stateFile) {
+		this.stateFile = stateFile;
+	}
+
+	/**
+	 * Loads the state file. A missing or unreadable file results in an
+	 * empty state, without watermark.
+	 */
+	public void load() {
+		clear();
+
+		if (!stateFile.isFile()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		try {
+			FileInputStream in = new FileInputStream(stateFile);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+
+			// Format: watermark = millis, roles = hash, fullscan.age = syncs,
+			// <identifier>.fp/.n/.r/.rw = fingerprint/member count/logins
+			for (String key : properties.stringPropertyNames()) {
+				if (key.endsWith(".fp")) {
+					String identifier = key.substring(0, key.length() - 3);
+					projects.put(identifier, new ProjectAccess(properties.getProperty(key),
+							Integer.parseInt(properties.getProperty(identifier + ".n", "-1")),
+							splitLogins(properties.getProperty(identifier + ".r", "")),
+							splitLogins(properties.getProperty(identifier + ".rw", ""))));
+				}
+			}
+
+			String mark = properties.getProperty("watermark");
+			if (mark != null) {
+				watermark = new Timestamp(Long.parseLong(mark));
+			}
+			roleHash = properties.getProperty("roles");
+			syncsSinceFullScan = Integer.parseInt(properties.getProperty("fullscan.age", "0"));
+		} catch (IOException e) {
+			clear();
+		} catch (NumberFormatException e) {
+			clear();
+		}
+	}
+
+	/**
+	 * Forgets the watermark, the role hash and the access of every repository,
+	 * so that the next synchronization is a full one.
+	 */
+	public void clear() {
+		watermark = null;
+		roleHash = null;
+		syncsSinceFullScan = 0;
+		projects.clear();
+	}
+
+	/**
+	 * Writes the state to a temporary file in the same directory, syncs it
+	 * to disk, then renames it over the previous state file.
+	 *
+	 * @throws IOException on write error
+	 */
+	public void save() throws IOException {
+		Properties properties = new Properties();
+		if (watermark != null) {
+			properties.setProperty("watermark", Long.toString(watermark.getTime()));
+		}
+		if (roleHash != null) {
+			properties.setProperty("roles", roleHash);
+		}
+		properties.setProperty("fullscan.age", Integer.toString(syncsSinceFullScan));
+		for (Map.Entry<String, ProjectAccess> e : projects.entrySet()) {
+			properties.setProperty(e.getKey() + ".fp", e.getValue().fingerprint);
+			properties.setProperty(e.getKey() + ".n", Integer.toString(e.getValue().memberCount));
+			properties.setProperty(e.getKey() + ".r", SvnReposAccessProcessor.stringJoin(e.getValue().readUsers, LOGIN_SEPARATOR));
+			properties.setProperty(e.getKey() + ".rw", SvnReposAccessProcessor.stringJoin(e.getValue().readWriteUsers, LOGIN_SEPARATOR));
+		}
+
+		File tempFile = File.createTempFile(stateFile.getName(), ".tmp", stateFile.getAbsoluteFile().getParentFile());
+		try {
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				properties.store(out, "Redmag incremental synchronization state");
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+
+			// rename() is atomic on POSIX filesystems. Other platforms refuse
+			// to rename over an existing file.
+			if (!tempFile.renameTo(stateFile)) {
+				stateFile.delete();
+				if (!tempFile.renameTo(stateFile)) {
+					throw new IOException("Cannot replace synchronization state " + stateFile.getPath());
+				}
+			}
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * @return the database time at the start of the last successful sync, or
+	 * null if a full synchronization is needed
+	 */
+	public Timestamp getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * @param watermark the database time at the start of the successful sync to set
+	 */
+	public void setWatermark(Timestamp watermark) {
+		this.watermark = watermark;
+	}
+
+	/**
+	 * @return the hash of the roles the access lists were computed for, or null if unknown
+	 */
+	public String getRoleHash() {
+		return roleHash;
+	}
+
+	/**
+	 * @param roleHash the hash of the roles the access lists are computed for to set
+	 */
+	public void setRoleHash(String roleHash) {
+		this.roleHash = roleHash;
+	}
+
+	/**
+	 * @return the number of successful syncs since the last full scan of
+	 * membership fingerprints
+	 */
+	public int getSyncsSinceFullScan() {
+		return syncsSinceFullScan;
+	}
+
+	/**
+	 * @param syncsSinceFullScan the number of syncs since the last full scan of
+	 * membership fingerprints to set
+	 */
+	public void setSyncsSinceFullScan(int syncsSinceFullScan) {
+		this.syncsSinceFullScan = syncsSinceFullScan;
+	}
+
+	/**
+	 * @param identifier - project identifier
+	 * @return the recorded access of the repository, or null if none
+	 */
+	public ProjectAccess get(String identifier) {
+		return projects.get(identifier);
+	}
+
+	/**
+	 * Records the access of a repository.
+	 *
+	 * @param identifier - project identifier
+	 * @param access - access lists and fingerprint of the project
+	 */
+	public void put(String identifier, ProjectAccess access) {
+		projects.put(identifier, access);
+	}
+
+	/**
+	 * Forgets the repositories that are not in <code>identifiers</code>
+	 * (deleted projects or repositories).
+	 *
+	 * @param identifiers - identifiers of the repositories to keep
+	 */
+	public void retain(Collection<String> identifiers) {
+		Iterator<String> it = projects.keySet().iterator();
+		while (it.hasNext()) {
+			if (!identifiers.contains(it.next())) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Splits a stored access list.
+	 *
+	 * @param logins - logins separated by LOGIN_SEPARATOR
+	 * @return the list of logins
+	 */
+	private static List<String> splitLogins(String logins) {
+		if (logins.length() == 0) {
+			return new ArrayList<String>();
+		}
+
+		return new ArrayList<String>(Arrays.asList(logins.split(LOGIN_SEPARATOR)));
+	}
+}
@@ -33,10 +33,15 @@
  */
 package ca.tentech.redmag.svn;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
 
-import com.Ostermiller.util.ExecHelper;
+import ca.tentech.redmag.exec.ProcessRunner;
 
 /**
  * Utility class to replace the SVNKit with minimal SVN validation
@@ -45,17 +50,92 @@ import com.Ostermiller.util.ExecHelper;
  * @author veilleux
  */
 public final class MicroSvnReposAdmin {
+	/** Limits the number of svnadmin processes running at the same time */
+	private static Semaphore processPermits = new Semaphore(Runtime.getRuntime().availableProcessors(), true);
+	/** Maximum run time of an svnadmin process (ms), 0 for no limit */
+	private static long processTimeout = 0;
+	/** Resolved location of the svnadmin binary, null until first use */
+	private static String svnadminPath = null;
+	
+	/** Filesystem type of FSFS repositories, as stored in db/fs-type */
+	public static final String FSFS_TYPE = "fsfs";
+	/** Filesystem type of Berkeley DB repositories, as stored in db/fs-type */
+	public static final String BDB_TYPE = "bdb";
+	
 	/**
-	 * Validates whether a path contains a valid SVN repository. Uses the local command-line <code>svnadmin</code>
-	 * tool. If the repository is incompatible with the current version, false is returned.
+	 * Validates whether a path contains a valid SVN repository by checking its
+	 * on-disk layout (fast mode). No process is started and no revision is read:
+	 * <ul>
+	 * <li>the <code>format</code> file holds a repository format number,</li>
+	 * <li>the <code>db/fs-type</code> file names a known filesystem back-end,</li>
+	 * <li>for FSFS, <code>db/current</code> starts with the youngest revision
+	 * number and <code>db/uuid</code> holds the repository UUID,</li>
+	 * <li>the <code>hooks</code> directory exists.</li>
+	 * </ul>
+	 * 
+	 * <P>Use <code>verifyRepos()</code> to check the repository contents.</P>
 	 * 
 	 * @param svnPath - path of directory to validate
-	 * @return true if the path is a valid SVN repository, false otherwise
+	 * @return true if the path is laid out as an SVN repository, false otherwise
 	 */
 	public static boolean isValidRepos(File svnPath) {
 		try {
+			if (readNumber(new File(svnPath, "format")) < 0) {
+				return false;
+			}
+			
+			if (!new File(svnPath, "hooks").isDirectory()) {
+				return false;
+			}
+			
+			File db = new File(svnPath, "db");
+			String fsType = readFirstLine(new File(db, "fs-type"));
+			if (FSFS_TYPE.equals(fsType)) {
+				String uuid = readFirstLine(new File(db, "uuid"));
+				return readNumber(new File(db, "current")) >= 0 && uuid != null && uuid.length() > 0;
+			} else {
+				// Berkeley DB repositories only have opaque database files
+				return BDB_TYPE.equals(fsType);
+			}
+		} catch (IOException e1) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Validates whether a path contains a valid SVN repository (deep mode). Uses the local
+	 * command-line <code>svnadmin verify</code> tool, which reads and checksums every revision.
+	 * If the repository is incompatible with the current version, false is returned.
+	 * 
+	 * @param svnPath - path of directory to validate
+	 * @return true if the path is a valid SVN repository, false otherwise
+	 */
+	public static boolean verifyRepos(File svnPath) {
+		return verifyRepos(svnPath, 0);
+	}
+	
+	/**
+	 * Verifies the revisions of an SVN repository from <code>startRevision</code>
+	 * up to HEAD, through the local command-line <code>svnadmin verify</code> tool.
+	 * Used to verify only the revisions committed since a previous verification.
+	 * 
+	 * @param svnPath - path of directory to validate
+	 * @param startRevision - first revision to verify (0 verifies the whole repository)
+	 * @return true if the verified revisions are valid, false otherwise
+	 */
+	public static boolean verifyRepos(File svnPath, long startRevision) {
+		try {
+			List<String> args = new ArrayList<String>();
+			args.add("verify");
+			args.add("-q");
+			if (startRevision > 0) {
+				args.add("-r");
+				args.add(startRevision + ":HEAD");
+			}
+			args.add(svnPath.getCanonicalPath());
+			
 			// Quietly executes svnadmin
-			if (ExecHelper.execUsingShell("svnadmin verify -q " + svnPath.getCanonicalPath()).getStatus() == 0) {
+			if (exec(args).getStatus() == 0) {
 				return true;
 			} else {
 				return false;
@@ -67,6 +147,149 @@ public final class MicroSvnReposAdmin {
 		}
 	}
 	
+	/**
+	 * Reads the youngest revision of an FSFS repository from <code>db/current</code>.
+	 * 
+	 * @param svnPath - repository directory
+	 * @return the youngest revision, or -1 if it cannot be read (missing file or BDB repository)
+	 */
+	public static long getYoungestRevision(File svnPath) {
+		try {
+			return readNumber(new File(svnPath, "db/current"));
+		} catch (IOException e1) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Sets the maximum number of svnadmin processes that may run at the same
+	 * time, whatever the number of threads calling this class. Must be called
+	 * before any repository operation.
+	 * 
+	 * @param maxProcesses - maximum number of concurrent svnadmin processes
+	 */
+	public static void setMaxConcurrentProcesses(int maxProcesses) {
+		processPermits = new Semaphore(maxProcesses, true);
+	}
+	
+	/**
+	 * Sets the maximum run time of svnadmin processes, after which they are
+	 * killed and the operation fails. Must be called before any repository operation.
+	 * 
+	 * @param timeout - maximum run time in milliseconds, 0 for no limit
+	 */
+	public static void setProcessTimeout(long timeout) {
+		processTimeout = timeout;
+	}
+	
+	/**
+	 * Sets the location of the svnadmin binary, instead of looking it up in the PATH.
+	 * 
+	 * @param path - path of the svnadmin executable
+	 */
+	public static synchronized void setSvnadminPath(String path) {
+		svnadminPath = path;
+	}
+	
+	/**
+	 * Returns the location of the svnadmin binary. Unless set explicitly, it
+	 * is looked up in the PATH on first use and cached.
+	 * 
+	 * @return the path of the svnadmin executable, or "svnadmin" if it was not found
+	 */
+	public static synchronized String getSvnadminPath() {
+		if (svnadminPath == null) {
+			String name = System.getProperty("os.name").startsWith("Windows") ? "svnadmin.exe" : "svnadmin";
+			svnadminPath = name;
+			
+			String path = System.getenv("PATH");
+			if (path != null) {
+				for (String dir : path.split(File.pathSeparator)) {
+					File candidate = new File(dir, name);
+					if (dir.length() > 0 && candidate.isFile() && candidate.canExecute()) {
+						svnadminPath = candidate.getAbsolutePath();
+						break;
+					}
+				}
+			}
+		}
+		
+		return svnadminPath;
+	}
+	
+	/**
+	 * Runs svnadmin directly (without a shell) once a process permit is available,
+	 * so that concurrent callers cannot cause a fork storm.
+	 * 
+	 * @param args - svnadmin arguments, starting with the subcommand
+	 * @return the results of the execution
+	 * @throws IOException on execution error, or if interrupted while waiting for a permit
+	 */
+	private static ProcessRunner exec(List<String> args) throws IOException {
+		String [] command = new String[args.size() + 1];
+		command[0] = getSvnadminPath();
+		for (int i = 0; i < args.size(); i++) {
+			command[i + 1] = args.get(i);
+		}
+		
+		Semaphore permits = processPermits;
+		
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting to run: svnadmin " + args);
+		}
+		
+		try {
+			return ProcessRunner.exec(command, processTimeout);
+		} finally {
+			permits.release();
+		}
+	}
+	
+	/**
+	 * Reads the first line of a small repository metadata file.
+	 * 
+	 * @param file - file to read
+	 * @return the trimmed first line, or null if the file is missing or empty
+	 * @throws IOException on read error
+	 */
+	private static String readFirstLine(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line = reader.readLine();
+			return (line == null) ? null : line.trim();
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Reads the leading number of a repository metadata file, such as
+	 * <code>format</code> or <code>db/current</code> ("<i>rev</i> [<i>node-id</i> <i>copy-id</i>]").
+	 * 
+	 * @param file - file to read
+	 * @return the leading number, or -1 if the file is missing or malformed
+	 * @throws IOException on read error
+	 */
+	static long readNumber(File file) throws IOException {
+		String line = readFirstLine(file);
+		if (line == null || line.length() == 0) {
+			return -1;
+		}
+		
+		try {
+			return Long.parseLong(line.split(" ")[0]);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
 	/**
 	 * Helper method to create an SVN repository by calling the <code>svnadmin</code> command-line tool.
 	 * 
@@ -75,10 +298,17 @@ public final class MicroSvnReposAdmin {
 	 * @throws IOException if the svnadmin returns a non-zero exit code. Exception message contains stdout and stderr log
 	 */
 	public static void createRepos(File svnPath, String extraFlags) throws IOException {
-		String command = "svnadmin create " + extraFlags + " " + svnPath.getCanonicalPath();;
+		List<String> args = new ArrayList<String>();
+		args.add("create");
+		for (String flag : extraFlags.trim().split("\\s+")) {
+			if (flag.length() > 0) {
+				args.add(flag);
+			}
+		}
+		args.add(svnPath.getCanonicalPath());
 
 		// Execute svnadmin command to create repos
-		ExecHelper svnResult = ExecHelper.execUsingShell(command);
+		ProcessRunner svnResult = exec(args);
 		
 		if (svnResult.getStatus() != 0) {
 			// Failure in creation, never return and send stderr + stdout result as exception message
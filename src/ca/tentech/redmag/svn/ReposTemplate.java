@@ -0,0 +1,206 @@
+/**
+ * File name: ReposTemplate.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Creates SVN repositories by copying a pristine template repository
+ * instead of running svnadmin for each of them
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.svn;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * <P>Creates SVN repositories by cloning a pristine, empty repository that
+ * is created once with <code>svnadmin</code> and kept in the SVN root. A new
+ * repository is a copy of the template tree with a fresh UUID, so no process
+ * is started per repository.</P>
+ *
+ * <P>The copy is made in a temporary directory next to the target and renamed
+ * into place when complete, so a failed creation leaves nothing behind.</P>
+ *
+ * @author veilleux
+ */
+public class ReposTemplate {
+	/** Name of the template repository directory, in the SVN repositories root */
+	public static final String TEMPLATE_DIRNAME = ".redmag-template";
+
+	/** Template repository directory */
+	private File templateDir;
+	/** Extra flags used to create the template repository (ex: "--pre-1.5-compatible") */
+	private String extraFlags;
+
+	/**
+	 * @param svnRoot - SVN repositories root, where the template is kept
+	 * @param extraFlags - Extra flags used to create the template repository (ex: "--pre-1.5-compatible")
+	 */
+	public ReposTemplate(String svnRoot, String extraFlags) {
+		this.templateDir = new File(svnRoot, TEMPLATE_DIRNAME).getAbsoluteFile();
+		this.extraFlags = extraFlags;
+	}
+
+	/**
+	 * Makes sure a valid template repository exists, creating it with
+	 * <code>svnadmin</code> if needed. An invalid template is replaced.
+	 * The check is structural only, so it is cheap enough to run before
+	 * every copy.
+	 *
+	 * @throws IOException if the template cannot be created
+	 */
+	public synchronized void ensureTemplate() throws IOException {
+		if (!MicroSvnReposAdmin.isValidRepos(templateDir)) {
+			File parent = templateDir.getParentFile();
+			File tempDir = new File(parent, TEMPLATE_DIRNAME + ".tmp-" + UUID.randomUUID());
+
+			try {
+				MicroSvnReposAdmin.createRepos(tempDir, extraFlags);
+
+				if (templateDir.exists()) {
+					deleteTree(templateDir.toPath());
+				}
+				Files.move(tempDir.toPath(), templateDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				if (tempDir.exists()) {
+					deleteTree(tempDir.toPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a repository by copying the template. The template is created
+	 * first if needed. Existing directories are never overwritten.
+	 *
+	 * @param svnPath - Directory path to use as root for new repository
+	 * @throws IOException if the target exists or on copy error
+	 */
+	public void createRepos(File svnPath) throws IOException {
+		ensureTemplate();
+
+		File target = svnPath.getAbsoluteFile();
+		if (target.exists()) {
+			throw new IOException("Repository path already exists: " + target.getPath());
+		}
+
+		File tempDir = new File(target.getParentFile(), "." + target.getName() + ".tmp-" + UUID.randomUUID());
+		try {
+			copyTree(templateDir.toPath(), tempDir.toPath());
+			writeNewUuid(new File(tempDir, "db/uuid"));
+
+			// Atomic publication: readers see either no repository or a complete one
+			Files.move(tempDir.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			if (tempDir.exists()) {
+				deleteTree(tempDir.toPath());
+			}
+		}
+	}
+
+	/**
+	 * @return the template repository directory
+	 */
+	public File getTemplateDir() {
+		return templateDir;
+	}
+
+	/**
+	 * Replaces the repository UUID, and the filesystem instance ID that
+	 * follows it in recent FSFS formats, with freshly generated ones.
+	 *
+	 * @param uuidFile - db/uuid file of the new repository
+	 * @throws IOException on read or write error
+	 */
+	private static void writeNewUuid(File uuidFile) throws IOException {
+		Charset ascii = Charset.forName("US-ASCII");
+		List<String> lines = Files.readAllLines(uuidFile.toPath(), ascii);
+
+		List<String> newLines = new ArrayList<String>(lines.size());
+		for (String line : lines) {
+			newLines.add(line.trim().length() > 0 ? UUID.randomUUID().toString() : line);
+		}
+
+		// Copied files keep the read-only permissions of the template
+		uuidFile.setWritable(true, true);
+		Files.write(uuidFile.toPath(), newLines, ascii);
+		uuidFile.setWritable(false, false);
+	}
+
+	/**
+	 * Recursively copies a directory tree, keeping file attributes.
+	 *
+	 * @param source - directory to copy
+	 * @param target - directory to create
+	 * @throws IOException on copy error
+	 */
+	private static void copyTree(final Path source, final Path target) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.copy(dir, target.resolve(source.relativize(dir)), StandardCopyOption.COPY_ATTRIBUTES);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.copy(file, target.resolve(source.relativize(file)), StandardCopyOption.COPY_ATTRIBUTES);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Recursively deletes a directory tree.
+	 *
+	 * @param root - directory to delete
+	 * @throws IOException on delete error
+	 */
+	private static void deleteTree(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) {
+					throw e;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * File name: ReposValidationCache.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca)
+ *
+ * Description:
+ * Persistent cache of repository validation results, keyed by the
+ * youngest revision of each repository
+ *
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.svn;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * <P>On-disk cache of repository validation results. For each repository path,
+ * the cache records the youngest revision that was validated, the modification
+ * time of <code>db/current</code> at that moment, whether the validation was a
+ * deep (<code>svnadmin verify</code>) one and its result.</P>
+ *
+ * <P>A repository whose head and metadata did not change since the cached
+ * validation does not need to be validated again. A repository that was deeply
+ * verified only needs the revisions committed since then to be verified.</P>
+ *
+ * <P>The cache file is rewritten atomically (temporary file + rename), so a
+ * crash never leaves a truncated cache behind. An unreadable cache is ignored.</P>
+ *
+ * @author veilleux
+ */
+public class ReposValidationCache {
+	/** Name of the cache file, stored in the SVN repositories root */
+	public static final String CACHE_FILENAME = ".redmag-validation-cache";
+
+	/** Cache file */
+	private File cacheFile;
+	/** Cached entries, keyed by repository path */
+	private Map<String, Entry> entries = new HashMap<String, Entry>();
+	/** Whether entries were modified since the last load or save */
+	private boolean dirty = false;
+
+	/**
+	 * Validation result of a single repository
+	 */
+	public static class Entry {
+		/** Youngest revision of the repository when validated */
+		private long youngestRevision;
+		/** Modification time of db/current when validated */
+		private long currentModified;
+		/** Whether the validation was a full svnadmin verify */
+		private boolean deep;
+		/** Validation result */
+		private boolean valid;
+
+		/**
+		 * @param youngestRevision - youngest revision of the repository when validated
+		 * @param currentModified - modification time of db/current when validated
+		 * @param deep - whether the validation was a full svnadmin verify
+		 * @param valid - validation result
+		 */
+		public Entry(long youngestRevision, long currentModified, boolean deep, boolean valid) {
+			this.youngestRevision = youngestRevision;
+			this.currentModified = currentModified;
+			this.deep = deep;
+			this.valid = valid;
+		}
+
+		/**
+		 * @return the youngest revision of the repository when validated
+		 */
+		public long getYoungestRevision() {
+			return youngestRevision;
+		}
+
+		/**
+		 * @return the modification time of db/current when validated
+		 */
+		public long getCurrentModified() {
+			return currentModified;
+		}
+
+		/**
+		 * @return whether the validation was a full svnadmin verify
+		 */
+		public boolean isDeep() {
+			return deep;
+		}
+
+		/**
+		 * @return the validation result
+		 */
+		public boolean isValid() {
+			return valid;
+		}
+	}
+
+	/**
+	 * @param svnRoot - SVN repositories root, where the cache file is kept
+	 */
+	public ReposValidationCache(String svnRoot) {
+		this.cacheFile = new File(svnRoot, CACHE_FILENAME);
+	}
+
+	/**
+	 * Loads the cache file, replacing the entries in memory. A missing or
+	 * unreadable cache file results in an empty cache.
+	 */
+	public synchronized void load() {
+		entries.clear();
+		dirty = false;
+
+		if (!cacheFile.isFile()) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		try {
+			FileInputStream in = new FileInputStream(cacheFile);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return;
+		}
+
+		// Format: path = youngestRevision,currentModified,deep|fast,valid|invalid
+		for (String path : properties.stringPropertyNames()) {
+			String [] fields = properties.getProperty(path).split(",");
+			if (fields.length != 4) {
+				continue;
+			}
+
+			try {
+				entries.put(path, new Entry(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+						fields[2].equals("deep"), fields[3].equals("valid")));
+			} catch (NumberFormatException e) {
+				// Drop malformed entries
+			}
+		}
+	}
+
+	/**
+	 * Writes the cache file if entries changed. The new content is written to a
+	 * temporary file in the same directory, synced to disk, then renamed over
+	 * the previous cache file.
+	 *
+	 * @throws IOException on write error
+	 */
+	public synchronized void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+
+		Properties properties = new Properties();
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			Entry entry = e.getValue();
+			properties.setProperty(e.getKey(), String.format("%d,%d,%s,%s",
+					entry.youngestRevision, entry.currentModified,
+					entry.deep ? "deep" : "fast", entry.valid ? "valid" : "invalid"));
+		}
+
+		File tempFile = File.createTempFile(CACHE_FILENAME, ".tmp", cacheFile.getAbsoluteFile().getParentFile());
+		try {
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				properties.store(out, "Redmag repository validation cache");
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+
+			// rename() is atomic on POSIX filesystems. Other platforms refuse
+			// to rename over an existing file.
+			if (!tempFile.renameTo(cacheFile)) {
+				cacheFile.delete();
+				if (!tempFile.renameTo(cacheFile)) {
+					throw new IOException("Cannot replace validation cache " + cacheFile.getPath());
+				}
+			}
+		} finally {
+			tempFile.delete();
+		}
+
+		dirty = false;
+	}
+
+	/**
+	 * @param path - absolute repository path
+	 * @return the cached validation of the repository, or null if none
+	 */
+	public synchronized Entry get(String path) {
+		return entries.get(path);
+	}
+
+	/**
+	 * Records the validation of a repository.
+	 *
+	 * @param path - absolute repository path
+	 * @param entry - validation result
+	 */
+	public synchronized void put(String path, Entry entry) {
+		entries.put(path, entry);
+		dirty = true;
+	}
+
+	/**
+	 * Forgets the validation of a repository.
+	 *
+	 * @param path - absolute repository path
+	 */
+	public synchronized void remove(String path) {
+		if (entries.remove(path) != null) {
+			dirty = true;
+		}
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * File name: DatasetGenerator.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Command-line tool writing synthetic Redmine datasets as snapshots
+ * and SQL dumps, for scale testing
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import ca.tentech.redmag.db.SnapshotRedmineDataLoader;
+
+import com.Ostermiller.util.CmdLn;
+import com.Ostermiller.util.CmdLnException;
+import com.Ostermiller.util.CmdLnOption;
+
+/**
+ * <P>Generates a <code>SyntheticDataset</code> and writes each of its
+ * generations to &lt;prefix&gt;-gen&lt;N&gt;.snapshot.gz, to be replayed
+ * with the --snapshot option of Redmag. With --sql, each generation is also
+ * written as a MySQL dump, &lt;prefix&gt;-gen&lt;N&gt;.sql.</P>
+ * 
+ * <P>Example, for 50000 projects and 2 million memberships, with a day of
+ * churn:</P>
+ * <pre>
+ * java ca.tentech.redmag.tools.DatasetGenerator --projects 50000 --memberships 2000000 \
+ *     --generations 2 --seed 42 --output /tmp/redmine-50k
+ * </pre>
+ * 
+ * @author veilleux
+ */
+public class DatasetGenerator {
+	private static final int OK_EXITCODE = 0;
+	private static final int BAD_ARGUMENTS_EXITCODE = 1;
+	private static final int WRITE_ERROR_EXITCODE = 2;
+	
+	/* Dataset defaults, shared with SyncBenchmark */
+	static final int DEFAULT_PROJECTS = 1000;
+	static final int DEFAULT_MEMBERS_PER_PROJECT = 40;
+	static final int DEFAULT_PROJECTS_PER_USER = 8;
+	static final double DEFAULT_SKEW = 1.0;
+	static final int DEFAULT_MAX_DEPTH = 6;
+	static final double DEFAULT_SUBPROJECT_RATIO = 0.6;
+	private static final double DEFAULT_CHURN = 0.02;
+	
+	/**
+	 * Main entrypoint of the dataset generator
+	 * 
+	 * @param args - command-line arguments
+	 */
+	public static void main(String[] args) {
+		CmdLn parser = new CmdLn(args).setDescription("Synthetic Redmine dataset generator for Redmag scale testing\n");
+		parser.addOptions(new CmdLnOption[] {
+			new CmdLnOption(new String [] {"help"}, new char [] {'?','h'}).setDescription("show help"),
+			new CmdLnOption("output",'o').setRequiredArgument().setDescription("Prefix of the files written"),
+			new CmdLnOption("projects").setRequiredArgument().setDescription("Number of projects (default: 1000)"),
+			new CmdLnOption("memberships").setRequiredArgument().setDescription("Number of memberships (default: 40 per project)"),
+			new CmdLnOption("users").setRequiredArgument().setDescription("Number of users (default: one per 8 memberships)"),
+			new CmdLnOption("seed").setRequiredArgument().setDescription("Random generator seed (default: 1)"),
+			new CmdLnOption("skew").setRequiredArgument().setDescription("Zipf exponent of project sizes and user activity, 0 for uniform (default: 1.0)"),
+			new CmdLnOption("max-depth").setRequiredArgument().setDescription("Maximum depth of subproject trees (default: 6)"),
+			new CmdLnOption("subprojects").setRequiredArgument().setDescription("Fraction of the projects that are subprojects (default: 0.6)"),
+			new CmdLnOption("generations").setRequiredArgument().setDescription("Number of generations written, each with churn applied to the previous one (default: 1)"),
+			new CmdLnOption("churn").setRequiredArgument().setDescription("Fraction of memberships and projects changed per generation (default: 0.02)"),
+			new CmdLnOption("sql").setDescription("Also write each generation as a MySQL dump"),
+			new CmdLnOption("verbose",'v').setDescription("be verbose")
+		});
+		
+		try {
+			parser.parse();
+			
+			if (parser.present('h')) {
+				parser.printHelp();
+				System.exit(OK_EXITCODE);
+			}
+		} catch (CmdLnException e1) {
+			System.out.println("ERROR: " + e1.getMessage() + "\n");
+			System.out.println("Use the -h option to get help !");
+			System.exit(BAD_ARGUMENTS_EXITCODE);
+		}
+		
+		String output = null;
+		int projects = 0;
+		int memberships = 0;
+		int users = 0;
+		long seed = 0;
+		double skew = 0;
+		int maxDepth = 0;
+		double subprojectRatio = 0;
+		int generations = 0;
+		double churn = 0;
+		boolean sql = parser.present("sql");
+		boolean verbose = parser.present("verbose");
+		
+		try {
+			if (!parser.present("output")) {
+				System.out.println("ERROR: Output prefix required !\n");
+				throw new IllegalArgumentException();
+			}
+			output = parser.getResult("output").getArgument();
+			
+			projects = (int) parseNumber(parser, "projects", DEFAULT_PROJECTS, 1, Integer.MAX_VALUE);
+			memberships = (int) parseNumber(parser, "memberships",
+					Math.min((long) projects * DEFAULT_MEMBERS_PER_PROJECT, Integer.MAX_VALUE), 0, Integer.MAX_VALUE);
+			users = (int) parseNumber(parser, "users",
+					Math.max(10, memberships / DEFAULT_PROJECTS_PER_USER), 1, Integer.MAX_VALUE);
+			seed = parseNumber(parser, "seed", 1, Long.MIN_VALUE, Long.MAX_VALUE);
+			maxDepth = (int) parseNumber(parser, "max-depth", DEFAULT_MAX_DEPTH, 0, Integer.MAX_VALUE);
+			generations = (int) parseNumber(parser, "generations", 1, 1, Integer.MAX_VALUE);
+			skew = parseFraction(parser, "skew", DEFAULT_SKEW, 0, 10);
+			subprojectRatio = parseFraction(parser, "subprojects", DEFAULT_SUBPROJECT_RATIO, 0, 1);
+			churn = parseFraction(parser, "churn", DEFAULT_CHURN, 0, 1);
+		} catch (IllegalArgumentException e1) {
+			System.out.println("Use the -h option to get help !");
+			System.exit(BAD_ARGUMENTS_EXITCODE);
+		}
+		
+		long start = System.currentTimeMillis();
+		SyntheticDataset dataset = new SyntheticDataset(seed, projects, memberships, users, skew, maxDepth, subprojectRatio);
+		if (verbose) {
+			System.out.printf("*** Generated %d projects (deepest at depth %d), %d users, %d memberships (largest project: %d) in %d ms\n",
+					dataset.getProjectCount(), dataset.getDeepestProject(), dataset.getUserCount(),
+					dataset.getMembershipCount(), dataset.getLargestProjectSize(), System.currentTimeMillis() - start);
+		}
+		
+		try {
+			for (int generation = 0; generation < generations; generation++) {
+				if (generation > 0) {
+					dataset.nextGeneration(churn);
+				}
+				
+				String prefix = String.format("%s-gen%d", output, generation);
+				SnapshotRedmineDataLoader.save(dataset.toLoader(), new File(prefix + ".snapshot.gz"));
+				if (sql) {
+					dataset.writeSqlDump(new File(prefix + ".sql"));
+				}
+				
+				System.out.printf("*** Generation %d: %d projects, %d memberships written to %s.*\n",
+						generation, dataset.getProjectCount(), dataset.getMembershipCount(), prefix);
+			}
+		} catch (SQLException e1) {
+			System.out.println("ERROR: " + e1.getMessage());
+			System.exit(WRITE_ERROR_EXITCODE);
+		} catch (IOException e1) {
+			System.out.println("ERROR: SQL dump could not be written: " + e1.toString());
+			System.exit(WRITE_ERROR_EXITCODE);
+		}
+		
+		System.exit(OK_EXITCODE);
+	}
+	
+	/**
+	 * @return the integer value of an option, or <code>defaultValue</code> if absent
+	 * @throws IllegalArgumentException if the value is not an integer within bounds
+	 */
+	private static long parseNumber(CmdLn parser, String option, long defaultValue, long min, long max) {
+		if (!parser.present(option)) {
+			return defaultValue;
+		}
+		
+		String argument = parser.getResult(option).getArgument();
+		try {
+			long value = Long.parseLong(argument);
+			if (value >= min && value <= max) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		
+		System.out.println("ERROR: Bad " + option + " value: \"" + argument + "\"");
+		throw new IllegalArgumentException();
+	}
+	
+	/**
+	 * @return the decimal value of an option, or <code>defaultValue</code> if absent
+	 * @throws IllegalArgumentException if the value is not a number within bounds
+	 */
+	private static double parseFraction(CmdLn parser, String option, double defaultValue, double min, double max) {
+		if (!parser.present(option)) {
+			return defaultValue;
+		}
+		
+		String argument = parser.getResult(option).getArgument();
+		try {
+			double value = Double.parseDouble(argument);
+			if (value >= min && value <= max) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		
+		System.out.println("ERROR: Bad " + option + " value: \"" + argument + "\"");
+		throw new IllegalArgumentException();
+	}
+}
@@ -0,0 +1,402 @@
+/**
+ * File name: SyncBenchmark.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * End-to-end synchronization benchmark, running against a stub
+ * svnadmin with controllable latency and failure rate
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import ca.tentech.redmag.db.RedmineDataLoader;
+import ca.tentech.redmag.db.SnapshotRedmineDataLoader;
+import ca.tentech.redmag.operations.ReposCreationResult;
+import ca.tentech.redmag.operations.SvnReposAccessProcessor;
+import ca.tentech.redmag.svn.MicroSvnReposAdmin;
+
+import com.Ostermiller.util.CmdLn;
+import com.Ostermiller.util.CmdLnException;
+import com.Ostermiller.util.CmdLnOption;
+
+/**
+ * <P>Times complete synchronization cycles, as run by Redmag, on a temporary
+ * SVN root. Repositories are created and verified by a stub
+ * <code>svnadmin</code> shell script, which logs each call, waits for a
+ * fixed latency and fails for a fixed share of the repositories. Failures are
+ * decided by a checksum of the repository path, so the same repositories fail
+ * on every run.</P>
+ * 
+ * <P>Redmine data is generated by <code>SyntheticDataset</code>, or read from
+ * a snapshot with --snapshot. The processor is configured like Redmag's
+ * command line does, and the phases of each cycle are timed separately:
+ * loading the data, checking existing repositories, creating the missing ones
+ * and writing the AuthZ file. The first cycle starts from an empty SVN root;
+ * the next ones find every repository in place.</P>
+ * 
+ * <P>For each phase, the wall time, the number of svnadmin processes started
+ * and the throughput in repositories per second are reported.</P>
+ * 
+ * @author veilleux
+ */
+public class SyncBenchmark {
+	private static final int OK_EXITCODE = 0;
+	private static final int BAD_ARGUMENTS_EXITCODE = 1;
+	private static final int RUN_ERROR_EXITCODE = 2;
+	
+	private static final long DEFAULT_LATENCY = 20;
+	private static final int DEFAULT_CYCLES = 2;
+	/** Roles of the synthetic datasets: reporters and auditors read, the others write */
+	private static final List<Integer> READ_ROLES = Arrays.asList(5, 7);
+	private static final List<Integer> READ_WRITE_ROLES = Arrays.asList(3, 4, 6);
+	/** Resolution of the failure rate of the stub */
+	private static final int FAILURE_SCALE = 10000;
+	
+	/**
+	 * Main entrypoint of the synchronization benchmark
+	 * 
+	 * @param args - command-line arguments
+	 */
+	public static void main(String[] args) {
+		CmdLn parser = new CmdLn(args).setDescription("End-to-end Redmag synchronization benchmark, with a stub svnadmin\n");
+		parser.addOptions(new CmdLnOption[] {
+			new CmdLnOption(new String [] {"help"}, new char [] {'?','h'}).setDescription("show help"),
+			new CmdLnOption("snapshot").setRequiredArgument().setDescription("Read Redmine data from a snapshot file instead of generating it"),
+			new CmdLnOption("projects").setRequiredArgument().setDescription("Number of projects generated (default: 1000)"),
+			new CmdLnOption("seed").setRequiredArgument().setDescription("Random generator seed of the generated data (default: 1)"),
+			new CmdLnOption("latency").setRequiredArgument().setDescription("Run time of each stub svnadmin call, in milliseconds (default: 20)"),
+			new CmdLnOption("failure-rate").setRequiredArgument().setDescription("Fraction of the repositories for which stub svnadmin calls fail (default: 0)"),
+			new CmdLnOption("cycles").setRequiredArgument().setDescription("Number of synchronization cycles (default: 2)"),
+			new CmdLnOption("jobs",'j').setRequiredArgument().setDescription("Maximum number of repositories validated concurrently (default: number of CPU cores)"),
+			new CmdLnOption("create-jobs").setRequiredArgument().setDescription("Maximum number of repositories created concurrently per volume (default: 2)"),
+			new CmdLnOption("template-create").setDescription("Create repositories by copying a template repository"),
+			new CmdLnOption("deep-verify").setDescription("Verify existing repositories with svnadmin"),
+			new CmdLnOption("work-dir").setRequiredArgument().setDescription("Directory holding the SVN root and the stub (default: a temporary directory)"),
+			new CmdLnOption("keep").setDescription("Keep the work directory at the end")
+		});
+		
+		try {
+			parser.parse();
+			
+			if (parser.present('h')) {
+				parser.printHelp();
+				System.exit(OK_EXITCODE);
+			}
+		} catch (CmdLnException e1) {
+			System.out.println("ERROR: " + e1.getMessage() + "\n");
+			System.out.println("Use the -h option to get help !");
+			System.exit(BAD_ARGUMENTS_EXITCODE);
+		}
+		
+		int projects = 0;
+		long seed = 0;
+		long latency = 0;
+		double failureRate = 0;
+		int cycles = 0;
+		int jobs = Runtime.getRuntime().availableProcessors();
+		int createJobs = SvnReposAccessProcessor.DEFAULT_CREATION_THREADS;
+		try {
+			projects = (int) parseNumber(parser, "projects", DatasetGenerator.DEFAULT_PROJECTS, 1, Integer.MAX_VALUE);
+			seed = parseNumber(parser, "seed", 1, Long.MIN_VALUE, Long.MAX_VALUE);
+			latency = parseNumber(parser, "latency", DEFAULT_LATENCY, 0, Long.MAX_VALUE);
+			cycles = (int) parseNumber(parser, "cycles", DEFAULT_CYCLES, 1, Integer.MAX_VALUE);
+			jobs = (int) parseNumber(parser, "jobs", jobs, 1, Integer.MAX_VALUE);
+			createJobs = (int) parseNumber(parser, "create-jobs", createJobs, 1, Integer.MAX_VALUE);
+			
+			if (parser.present("failure-rate")) {
+				String argument = parser.getResult("failure-rate").getArgument();
+				try {
+					failureRate = Double.parseDouble(argument);
+				} catch (NumberFormatException e) {
+					failureRate = -1;
+				}
+				if (failureRate < 0 || failureRate > 1) {
+					System.out.println("ERROR: Bad failure rate: \"" + argument + "\"");
+					throw new IllegalArgumentException();
+				}
+			}
+			
+			if (parser.present("snapshot") && !new File(parser.getResult("snapshot").getArgument()).isFile()) {
+				System.out.println("ERROR: Snapshot file not found: \"" + parser.getResult("snapshot").getArgument() + "\"");
+				throw new IllegalArgumentException();
+			}
+		} catch (IllegalArgumentException e1) {
+			System.out.println("Use the -h option to get help !");
+			System.exit(BAD_ARGUMENTS_EXITCODE);
+		}
+		
+		File workDir = null;
+		SvnReposAccessProcessor processor = null;
+		int exitCode = OK_EXITCODE;
+		try {
+			if (parser.present("work-dir")) {
+				workDir = new File(parser.getResult("work-dir").getArgument()).getAbsoluteFile();
+				if (!workDir.isDirectory() && !workDir.mkdirs()) {
+					throw new IOException("Cannot create work directory " + workDir);
+				}
+			} else {
+				workDir = Files.createTempDirectory("redmag-sync-bench").toFile();
+			}
+			File svnRoot = new File(workDir, "svn");
+			svnRoot.mkdirs();
+			File log = new File(workDir, "svnadmin.log");
+			MicroSvnReposAdmin.setSvnadminPath(installStub(workDir, log, latency, failureRate).getAbsolutePath());
+			
+			System.out.printf("*** Work directory: %s\n", workDir);
+			System.out.printf("*** Stub svnadmin: %d ms latency, %.2f%% failures\n", latency, failureRate * 100);
+			
+			// Load phase
+			long start = System.nanoTime();
+			RedmineDataLoader loader;
+			if (parser.present("snapshot")) {
+				loader = new SnapshotRedmineDataLoader(new File(parser.getResult("snapshot").getArgument()));
+			} else {
+				int memberships = projects * DatasetGenerator.DEFAULT_MEMBERS_PER_PROJECT;
+				loader = new SyntheticDataset(seed, projects, memberships,
+						Math.max(10, memberships / DatasetGenerator.DEFAULT_PROJECTS_PER_USER), DatasetGenerator.DEFAULT_SKEW,
+						DatasetGenerator.DEFAULT_MAX_DEPTH, DatasetGenerator.DEFAULT_SUBPROJECT_RATIO).toLoader();
+			}
+			int repositories = loader.getProjectList().size();
+			System.out.printf("\n%-6s %-8s %10s %8s %8s %10s\n", "cycle", "phase", "wall ms", "forks", "repos", "repos/s");
+			report(0, "load", start, 0, repositories);
+			
+			processor = new SvnReposAccessProcessor();
+			processor.setLoader(loader);
+			processor.setSvnRoot(svnRoot.getAbsolutePath());
+			processor.setOutputFilename(new File(svnRoot, "access.authZ").getAbsolutePath());
+			processor.setReadRoles(READ_ROLES);
+			processor.setReadWriteRoles(READ_WRITE_ROLES);
+			processor.setValidationThreads(jobs);
+			processor.setCreationThreads(createJobs);
+			processor.setTemplateCreation(parser.present("template-create"));
+			processor.setDeepVerify(parser.present("deep-verify"));
+			MicroSvnReposAdmin.setMaxConcurrentProcesses(jobs);
+			
+			int failures = 0;
+			for (int cycle = 1; cycle <= cycles; cycle++) {
+				long forks = countLines(log);
+				start = System.nanoTime();
+				processor.checkExistingRepositories();
+				forks = report(cycle, "check", start, forks, countLines(log), repositories);
+				
+				start = System.nanoTime();
+				List<ReposCreationResult> results = processor.createMissingRepositories();
+				forks = report(cycle, "create", start, forks, countLines(log), results.size());
+				
+				start = System.nanoTime();
+				processor.generateUserPermissions();
+				report(cycle, "authz", start, forks, countLines(log), repositories);
+				
+				failures = 0;
+				for (ReposCreationResult result : results) {
+					if (!result.isSuccess()) {
+						failures++;
+					}
+				}
+				if (failures > 0) {
+					System.out.printf("%-6d %d of %d creations failed\n", cycle, failures, results.size());
+				}
+			}
+		} catch (SQLException e1) {
+			System.out.println("ERROR: Data access error: " + e1.toString());
+			exitCode = RUN_ERROR_EXITCODE;
+		} catch (IOException e1) {
+			System.out.println("ERROR: " + e1.toString());
+			exitCode = RUN_ERROR_EXITCODE;
+		} finally {
+			if (processor != null) {
+				processor.close();
+			}
+			if (workDir != null && !parser.present("keep")) {
+				try {
+					deleteTree(workDir.toPath());
+				} catch (IOException e1) {
+					System.out.println("WARNING: Cannot delete work directory: " + e1.toString());
+				}
+			}
+		}
+		
+		System.exit(exitCode);
+	}
+	
+	/**
+	 * Prints the report line of a phase without svnadmin calls.
+	 */
+	private static void report(int cycle, String phase, long start, long forks, int repositories) {
+		report(cycle, phase, start, forks, forks, repositories);
+	}
+	
+	/**
+	 * Prints the report line of a phase.
+	 * 
+	 * @param cycle - cycle number, 0 before the first cycle
+	 * @param phase - phase name
+	 * @param start - start time of the phase, from <code>System.nanoTime()</code>
+	 * @param forksBefore - number of svnadmin calls logged before the phase
+	 * @param forksAfter - number of svnadmin calls logged after the phase
+	 * @param repositories - number of repositories handled by the phase
+	 * @return <code>forksAfter</code>
+	 */
+	private static long report(int cycle, String phase, long start, long forksBefore, long forksAfter, int repositories) {
+		double elapsed = (System.nanoTime() - start) / 1e6;
+		System.out.printf("%-6d %-8s %10.1f %8d %8d %10.1f\n", cycle, phase, elapsed, forksAfter - forksBefore,
+				repositories, elapsed > 0 ? repositories * 1000 / elapsed : 0.0);
+		
+		return forksAfter;
+	}
+	
+	/**
+	 * Writes the stub svnadmin script. Each call appends its arguments to the
+	 * log, sleeps for the latency, then fails if the checksum of the repository
+	 * path falls below the failure rate. Otherwise, "create" lays out an FSFS
+	 * repository that passes the structural validation, and "verify" succeeds.
+	 * 
+	 * @param dir - directory of the script
+	 * @param log - call log, one line per process started
+	 * @param latency - run time of each call, in milliseconds
+	 * @param failureRate - fraction of the repositories for which calls fail
+	 * @return the script
+	 * @throws IOException on write error
+	 */
+	private static File installStub(File dir, File log, long latency, double failureRate) throws IOException {
+		File stub = new File(dir, "svnadmin");
+		
+		Writer writer = new FileWriter(stub);
+		try {
+			writer.write("#!/bin/sh\n");
+			writer.write("# Stub svnadmin written by the Redmag synchronization benchmark\n");
+			writer.write("echo \"$*\" >> '" + log.getAbsolutePath() + "'\n");
+			writer.write("for arg; do repos=\"$arg\"; done\n");
+			if (latency > 0) {
+				writer.write(String.format("sleep %d.%03d\n", latency / 1000, latency % 1000));
+			}
+			if (failureRate > 0) {
+				writer.write("sum=$(printf '%s' \"$repos\" | cksum | cut -d' ' -f1)\n");
+				writer.write(String.format("if [ $((sum %% %d)) -lt %d ]; then\n", FAILURE_SCALE, Math.round(failureRate * FAILURE_SCALE)));
+				writer.write("\techo \"svnadmin: stub failure for '$repos'\" >&2\n\texit 1\nfi\n");
+			}
+			writer.write("case \"$1\" in\n");
+			writer.write("create)\n");
+			writer.write("\tmkdir -p \"$repos/db\" \"$repos/hooks\" \"$repos/conf\" || exit 1\n");
+			writer.write("\techo 5 > \"$repos/format\"\n");
+			writer.write("\techo fsfs > \"$repos/db/fs-type\"\n");
+			writer.write("\techo 0 > \"$repos/db/current\"\n");
+			writer.write("\techo 00000000-0000-0000-0000-000000000000 > \"$repos/db/uuid\"\n");
+			writer.write("\t;;\n");
+			writer.write("verify)\n\t;;\n");
+			writer.write("*)\n\techo \"svnadmin: unsupported subcommand '$1'\" >&2\n\texit 1\n\t;;\n");
+			writer.write("esac\n");
+		} finally {
+			writer.close();
+		}
+		
+		if (!stub.setExecutable(true)) {
+			throw new IOException("Cannot make " + stub + " executable");
+		}
+		log.delete();
+		log.createNewFile();
+		
+		return stub;
+	}
+	
+	/**
+	 * @return the number of lines of a file
+	 * @throws IOException on read error
+	 */
+	private static long countLines(File file) throws IOException {
+		long lines = 0;
+		
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			while (reader.readLine() != null) {
+				lines++;
+			}
+		} finally {
+			reader.close();
+		}
+		
+		return lines;
+	}
+	
+	/**
+	 * @return the integer value of an option, or <code>defaultValue</code> if absent
+	 * @throws IllegalArgumentException if the value is not an integer within bounds
+	 */
+	private static long parseNumber(CmdLn parser, String option, long defaultValue, long min, long max) {
+		if (!parser.present(option)) {
+			return defaultValue;
+		}
+		
+		String argument = parser.getResult(option).getArgument();
+		try {
+			long value = Long.parseLong(argument);
+			if (value >= min && value <= max) {
+				return value;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+		
+		System.out.println("ERROR: Bad " + option + " value: \"" + argument + "\"");
+		throw new IllegalArgumentException();
+	}
+	
+	/**
+	 * Deletes a directory and its contents.
+	 * 
+	 * @param root - directory to delete
+	 * @throws IOException on delete error
+	 */
+	private static void deleteTree(Path root) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if (e != null) {
+					throw e;
+				}
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
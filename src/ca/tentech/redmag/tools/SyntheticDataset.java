@@ -0,0 +1,626 @@
+/**
+ * File name: SyntheticDataset.java
+ * Date: 2026-10-16
+ * $Id$
+ *
+ * By Tennessee Carmel-Veillleux (veilleux (at) tentech (dot) ca) 
+ *
+ * Description:
+ * Reproducible synthetic Redmine dataset, with skewed memberships,
+ * subproject trees, shared role sets and churn between generations
+ * 
+ * ------
+ * This file is part of the Redmag program (http://code.google.com/p/redmag)
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package ca.tentech.redmag.tools;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TimeZone;
+
+import ca.tentech.redmag.db.MemoryRedmineDataLoader;
+import ca.tentech.redmag.db.RedmineProject;
+
+/**
+ * <P>Synthetic Redmine dataset, generated from a random seed: the same
+ * parameters and seed always yield the same projects, users and memberships,
+ * generation after generation.</P>
+ * 
+ * <P>The dataset models the shape of a large Redmine instance:</P>
+ * <UL>
+ * <LI>Project sizes and user activity follow Zipf distributions: a few
+ * projects have thousands of members, most have a handful, and a few users
+ * are members of a large share of the projects.</LI>
+ * <LI>Projects form subproject trees, up to a maximum depth. Chains of
+ * subprojects are favored, so the deepest trees are reached.</LI>
+ * <LI>Each tree uses one of a few shared role sets, and its members' roles
+ * are drawn from it.</LI>
+ * <LI><code>nextGeneration()</code> applies churn: memberships removed,
+ * added and changing role, projects updated and created. New rows are
+ * timestamped with the generation, so incremental sync sees them.</LI>
+ * </UL>
+ * 
+ * <P>A user is a member of a project at most once, as in Redmine.</P>
+ * 
+ * @author veilleux
+ */
+public class SyntheticDataset {
+	/** Time of generation 0: 2009-06-01 00:00:00 UTC, fixed so that output is reproducible */
+	public static final long BASE_TIME = 1243814400000L;
+	/** Time between two generations: one day */
+	public static final long GENERATION_INTERVAL = 24L * 3600 * 1000;
+	
+	/** Role names, indexed by role ID. IDs 1 and 2 are the built-in Redmine roles */
+	private static final String [] ROLE_NAMES = {null, "Non member", "Anonymous",
+		"Manager", "Developer", "Reporter", "Release manager", "Auditor"};
+	/** Role sets shared by the project trees */
+	private static final int [][] ROLE_SETS = {{3, 4, 5}, {4, 5}, {3, 4}, {4, 5, 6}, {3, 5, 7}};
+	/** Probability that a subproject is attached to the previous project, making chains */
+	private static final double CHAIN_PROBABILITY = 0.5;
+	/** Largest project, as a fraction of the users, so that members can be drawn without replacement */
+	private static final int MAX_PROJECT_SHARE = 4;
+	/** Number of members above which a project keeps a set of its users */
+	private static final int INDEX_THRESHOLD = 64;
+	/** Rows per INSERT statement of SQL dumps */
+	private static final int SQL_BATCH_SIZE = 1000;
+	
+	/**
+	 * Members of a project, as parallel columns. Removal moves the last
+	 * member in place of the removed one.
+	 */
+	private static final class Members {
+		private int size = 0;
+		private int [] users = new int [4];
+		private int [] roles = new int [4];
+		private int [] ids = new int [4];
+		private int [] generations = new int [4];
+		/** Users of the project, only kept for large projects */
+		private HashSet<Integer> index = null;
+		
+		private boolean contains(int user) {
+			if (index != null) {
+				return index.contains(Integer.valueOf(user));
+			}
+			for (int i = 0; i < size; i++) {
+				if (users[i] == user) {
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		private void add(int user, int role, int id, int generation) {
+			if (size == users.length) {
+				int capacity = size * 2;
+				users = Arrays.copyOf(users, capacity);
+				roles = Arrays.copyOf(roles, capacity);
+				ids = Arrays.copyOf(ids, capacity);
+				generations = Arrays.copyOf(generations, capacity);
+			}
+			users[size] = user;
+			roles[size] = role;
+			ids[size] = id;
+			generations[size] = generation;
+			size++;
+			
+			if (index != null) {
+				index.add(Integer.valueOf(user));
+			} else if (size > INDEX_THRESHOLD) {
+				index = new HashSet<Integer>();
+				for (int i = 0; i < size; i++) {
+					index.add(Integer.valueOf(users[i]));
+				}
+			}
+		}
+		
+		private void remove(int i) {
+			if (index != null) {
+				index.remove(Integer.valueOf(users[i]));
+			}
+			size--;
+			users[i] = users[size];
+			roles[i] = roles[size];
+			ids[i] = ids[size];
+			generations[i] = generations[size];
+		}
+	}
+	
+	private Random random;
+	private double skew;
+	private int maxDepth;
+	private double subprojectRatio;
+	private int generation = 0;
+	
+	private int projectCount = 0;
+	/** Parent of each project, -1 for root projects */
+	private int [] parents;
+	private int [] depths;
+	/** Index in ROLE_SETS of the role set of each project */
+	private int [] roleSets;
+	/** Generation of the last update of each project */
+	private int [] updated;
+	private Members [] members;
+	private int membershipCount = 0;
+	private int nextMemberId = 1;
+	
+	private int userCount;
+	/** User of each popularity rank */
+	private int [] usersByRank;
+	/** Cumulative popularity of the users, by rank */
+	private double [] userPopularity;
+	/** Number of members of the project of each size rank */
+	private int [] sizeByRank;
+	
+	/**
+	 * Generates generation 0 of a dataset.
+	 * 
+	 * @param seed - random generator seed
+	 * @param projects - number of projects
+	 * @param memberships - number of memberships aimed at. Rounding makes the
+	 * actual count slightly different.
+	 * @param users - number of users
+	 * @param skew - Zipf exponent of project sizes and user activity, 0 for uniform
+	 * @param maxDepth - maximum depth of subproject trees, 0 for flat projects
+	 * @param subprojectRatio - fraction of the projects that are subprojects
+	 */
+	public SyntheticDataset(long seed, int projects, int memberships, int users,
+			double skew, int maxDepth, double subprojectRatio) {
+		this.random = new Random(seed);
+		this.skew = skew;
+		this.maxDepth = maxDepth;
+		this.subprojectRatio = subprojectRatio;
+		this.userCount = users;
+		
+		// User popularity: Zipf weights over a random ranking of the users
+		usersByRank = shuffledRange(users);
+		userPopularity = new double [users];
+		double sum = 0;
+		for (int rank = 0; rank < users; rank++) {
+			sum += zipf(rank);
+			userPopularity[rank] = sum;
+		}
+		
+		// Project sizes: Zipf weights over a random ranking of the projects
+		sizeByRank = projectSizes(projects, memberships);
+		
+		parents = new int [projects];
+		depths = new int [projects];
+		roleSets = new int [projects];
+		updated = new int [projects];
+		members = new Members [projects];
+		
+		int [] sizeRanks = shuffledRange(projects);
+		for (int i = 0; i < projects; i++) {
+			addProject(sizeRanks[i]);
+		}
+	}
+	
+	/**
+	 * Applies one generation of churn: <code>churn</code> of the memberships
+	 * are removed and as many are added, half as many change role, and
+	 * <code>churn</code> of the projects are updated. Projects are created
+	 * at a quarter of that rate.
+	 * 
+	 * @param churn - fraction of the dataset changed, ex: 0.02
+	 */
+	public void nextGeneration(double churn) {
+		generation++;
+		
+		int changes = (int) Math.round(churn * membershipCount);
+		for (int i = 0; i < changes && membershipCount > 0; i++) {
+			int project = randomProjectBySize();
+			members[project].remove(random.nextInt(members[project].size));
+			membershipCount--;
+		}
+		for (int i = 0; i < changes / 2 && membershipCount > 0; i++) {
+			int project = randomProjectBySize();
+			Members m = members[project];
+			m.roles[random.nextInt(m.size)] = randomRole(project);
+		}
+		for (int i = 0; i < changes && membershipCount > 0; i++) {
+			// Large projects grow faster
+			addMembers(randomProjectBySize(), 1);
+		}
+		
+		int projectChanges = (int) Math.round(churn * projectCount);
+		for (int i = 0; i < projectChanges; i++) {
+			updated[random.nextInt(projectCount)] = generation;
+		}
+		for (int i = 0; i < projectChanges / 4; i++) {
+			addProject(random.nextInt(projectCount));
+		}
+	}
+	
+	/**
+	 * Adds a project, with its members.
+	 * 
+	 * @param sizeRank - rank of the project in the size distribution
+	 */
+	private void addProject(int sizeRank) {
+		if (projectCount == parents.length) {
+			int capacity = projectCount + projectCount / 2 + 1;
+			parents = Arrays.copyOf(parents, capacity);
+			depths = Arrays.copyOf(depths, capacity);
+			roleSets = Arrays.copyOf(roleSets, capacity);
+			updated = Arrays.copyOf(updated, capacity);
+			members = Arrays.copyOf(members, capacity);
+		}
+		
+		int project = projectCount++;
+		int parent = -1;
+		if (project > 0 && maxDepth > 0 && random.nextDouble() < subprojectRatio) {
+			parent = random.nextDouble() < CHAIN_PROBABILITY ? project - 1 : random.nextInt(project);
+			if (depths[parent] >= maxDepth) {
+				parent = -1;
+			}
+		}
+		
+		parents[project] = parent;
+		depths[project] = parent < 0 ? 0 : depths[parent] + 1;
+		roleSets[project] = parent < 0 ? random.nextInt(ROLE_SETS.length) : roleSets[parent];
+		updated[project] = generation;
+		members[project] = new Members();
+		
+		addMembers(project, sizeByRank[sizeRank]);
+	}
+	
+	/**
+	 * Computes project sizes proportional to the Zipf weights of their ranks,
+	 * between 1 and the size limit. The sizes are scaled up so that the
+	 * members cut by the limit are given to the other projects.
+	 * 
+	 * @param projects - number of projects
+	 * @param memberships - total size aimed at
+	 * @return the size of the project of each rank
+	 */
+	private int [] projectSizes(int projects, int memberships) {
+		int limit = Math.max(1, userCount / MAX_PROJECT_SHARE);
+		double weightSum = 0;
+		for (int rank = 0; rank < projects; rank++) {
+			weightSum += zipf(rank);
+		}
+		
+		// Bisection on the scale factor: the total size grows with it
+		double low = 0;
+		double high = memberships;
+		int [] sizes = new int [projects];
+		for (int iteration = 0; iteration < 64; iteration++) {
+			double scale = (low + high) / 2;
+			long total = 0;
+			for (int rank = 0; rank < projects; rank++) {
+				total += Math.max(1, Math.min(limit, Math.round(scale * memberships * zipf(rank) / weightSum)));
+			}
+			
+			if (total < memberships) {
+				low = scale;
+			} else {
+				high = scale;
+			}
+		}
+		
+		for (int rank = 0; rank < projects; rank++) {
+			sizes[rank] = (int) Math.max(1, Math.min(limit, Math.round(high * memberships * zipf(rank) / weightSum)));
+		}
+		
+		return sizes;
+	}
+	
+	/**
+	 * Adds members to a project, drawing users by popularity. Users drawn
+	 * again are redrawn; past a number of attempts, users are drawn uniformly,
+	 * so that large projects fill up quickly.
+	 */
+	private void addMembers(int project, int count) {
+		Members m = members[project];
+		int limit = Math.min(userCount, m.size + count);
+		int attempts = 0;
+		
+		while (m.size < limit) {
+			int user;
+			if (attempts++ < 4 * count) {
+				int rank = Arrays.binarySearch(userPopularity, random.nextDouble() * userPopularity[userCount - 1]);
+				user = usersByRank[Math.min(userCount - 1, rank < 0 ? -rank - 1 : rank)];
+			} else {
+				user = random.nextInt(userCount);
+			}
+			
+			if (!m.contains(user)) {
+				m.add(user, randomRole(project), nextMemberId++, generation);
+				membershipCount++;
+			}
+		}
+	}
+	
+	/**
+	 * @return a project drawn with a probability proportional to its size
+	 */
+	private int randomProjectBySize() {
+		while (true) {
+			int project = random.nextInt(projectCount);
+			// Rejection sampling against the largest possible project
+			if (members[project].size > 0
+					&& random.nextInt(userCount / MAX_PROJECT_SHARE + 1) < members[project].size) {
+				return project;
+			}
+		}
+	}
+	
+	/**
+	 * @return a role drawn from the role set of a project
+	 */
+	private int randomRole(int project) {
+		int [] roles = ROLE_SETS[roleSets[project]];
+		return roles[random.nextInt(roles.length)];
+	}
+	
+	/**
+	 * @return the Zipf weight of a rank, starting at 0
+	 */
+	private double zipf(int rank) {
+		return 1.0 / Math.pow(rank + 1, skew);
+	}
+	
+	/**
+	 * @return the integers from 0 to <code>n - 1</code>, in random order
+	 */
+	private int [] shuffledRange(int n) {
+		int [] result = new int [n];
+		for (int i = 0; i < n; i++) {
+			result[i] = i;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = result[i];
+			result[i] = result[j];
+			result[j] = swap;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @param project - project index
+	 * @return the project identifier, ex: "proj000042"
+	 */
+	public static String projectIdentifier(int project) {
+		return String.format("proj%06d", project + 1);
+	}
+	
+	/**
+	 * @param user - user index
+	 * @return the user login, ex: "user0000042"
+	 */
+	public static String userLogin(int user) {
+		return String.format("user%07d", user + 1);
+	}
+	
+	/**
+	 * @return the time of a generation, in milliseconds since the epoch
+	 */
+	private static long generationTime(int generation) {
+		return BASE_TIME + generation * GENERATION_INTERVAL;
+	}
+	
+	/**
+	 * Copies the current generation into a memory loader.
+	 * 
+	 * @return a loader serving the dataset
+	 */
+	public MemoryRedmineDataLoader toLoader() {
+		MemoryRedmineDataLoader loader = new MemoryRedmineDataLoader();
+		
+		for (int role = 1; role < ROLE_NAMES.length; role++) {
+			loader.addRole(role, ROLE_NAMES[role]);
+		}
+		
+		String [] logins = new String [userCount];
+		for (int user = 0; user < userCount; user++) {
+			logins[user] = userLogin(user);
+		}
+		
+		for (int project = 0; project < projectCount; project++) {
+			String identifier = projectIdentifier(project);
+			loader.addProject(new RedmineProject(identifier, "Project " + (project + 1), description(project),
+					parents[project] >= 0, new Date(generationTime(updated[project]))));
+			
+			Members m = members[project];
+			for (int i = 0; i < m.size; i++) {
+				loader.addMembership(logins[m.users[i]], identifier, m.roles[i]);
+			}
+		}
+		
+		return loader;
+	}
+	
+	/**
+	 * Writes the current generation as a MySQL dump of the Redmine tables read
+	 * by Redmag: roles, projects, users and members. The dump drops and
+	 * recreates these tables, so it must only be loaded into a scratch database.
+	 * 
+	 * @param file - SQL file to write
+	 * @throws IOException on write error
+	 */
+	public void writeSqlDump(File file) throws IOException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String baseTime = format.format(new Date(BASE_TIME));
+		String [] generationTimes = new String [generation + 1];
+		for (int g = 0; g <= generation; g++) {
+			generationTimes[g] = format.format(new Date(generationTime(g)));
+		}
+		
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8")));
+		try {
+			writer.write(String.format("-- Synthetic Redmine dataset, generation %d: %d projects, %d users, %d memberships\n",
+					generation, projectCount, userCount, membershipCount));
+			writer.write("-- Drops and recreates the roles, projects, users and members tables: load into a scratch database only\n");
+			writer.write("SET NAMES utf8;\nSET time_zone = '+00:00';\nSET autocommit = 0;\nSET unique_checks = 0;\n\n");
+			
+			writer.write("DROP TABLE IF EXISTS members, projects, users, roles;\n");
+			writer.write("CREATE TABLE roles (id INT NOT NULL PRIMARY KEY, name VARCHAR(30) NOT NULL);\n");
+			writer.write("CREATE TABLE projects (id INT NOT NULL PRIMARY KEY, name VARCHAR(30) NOT NULL," +
+					" description TEXT, parent_id INT, identifier VARCHAR(20), is_public TINYINT(1) NOT NULL DEFAULT 1," +
+					" status INT NOT NULL DEFAULT 1, created_on DATETIME, updated_on DATETIME," +
+					" KEY index_projects_on_identifier (identifier));\n");
+			writer.write("CREATE TABLE users (id INT NOT NULL PRIMARY KEY, login VARCHAR(30) NOT NULL," +
+					" firstname VARCHAR(30) NOT NULL, lastname VARCHAR(30) NOT NULL, mail VARCHAR(60) NOT NULL," +
+					" admin TINYINT(1) NOT NULL DEFAULT 0, status INT NOT NULL DEFAULT 1, last_login_on DATETIME," +
+					" created_on DATETIME, updated_on DATETIME);\n");
+			writer.write("CREATE TABLE members (id INT NOT NULL PRIMARY KEY, user_id INT NOT NULL, project_id INT NOT NULL," +
+					" role_id INT NOT NULL, created_on DATETIME, mail_notification TINYINT(1) NOT NULL DEFAULT 0," +
+					" KEY index_members_on_project_id (project_id), KEY index_members_on_user_id (user_id));\n\n");
+			
+			SqlBatch batch = new SqlBatch(writer, "INSERT INTO roles (id, name) VALUES ");
+			for (int role = 1; role < ROLE_NAMES.length; role++) {
+				batch.add(String.format("(%d,'%s')", role, ROLE_NAMES[role]));
+			}
+			batch.finish();
+			
+			batch = new SqlBatch(writer, "INSERT INTO projects (id, name, description, parent_id, identifier," +
+					" created_on, updated_on) VALUES ");
+			for (int project = 0; project < projectCount; project++) {
+				batch.add(String.format("(%d,'Project %d','%s',%s,'%s','%s','%s')", project + 1, project + 1,
+						description(project), parents[project] < 0 ? "NULL" : Integer.toString(parents[project] + 1),
+						projectIdentifier(project), baseTime, generationTimes[updated[project]]));
+			}
+			batch.finish();
+			
+			batch = new SqlBatch(writer, "INSERT INTO users (id, login, firstname, lastname, mail," +
+					" created_on, updated_on) VALUES ");
+			for (int user = 0; user < userCount; user++) {
+				String login = userLogin(user);
+				batch.add(String.format("(%d,'%s','User','%d','%s@example.com','%s','%s')",
+						user + 1, login, user + 1, login, baseTime, baseTime));
+			}
+			batch.finish();
+			
+			batch = new SqlBatch(writer, "INSERT INTO members (id, user_id, project_id, role_id, created_on) VALUES ");
+			for (int project = 0; project < projectCount; project++) {
+				Members m = members[project];
+				for (int i = 0; i < m.size; i++) {
+					batch.add("(" + m.ids[i] + "," + (m.users[i] + 1) + "," + (project + 1) + ","
+							+ m.roles[i] + ",'" + generationTimes[m.generations[i]] + "')");
+				}
+			}
+			batch.finish();
+			
+			writer.write("COMMIT;\n");
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * Multi-row INSERT statement writer, starting a new statement every
+	 * SQL_BATCH_SIZE rows.
+	 */
+	private static final class SqlBatch {
+		private Writer writer;
+		private String insert;
+		private int rows = 0;
+		
+		private SqlBatch(Writer writer, String insert) {
+			this.writer = writer;
+			this.insert = insert;
+		}
+		
+		private void add(String values) throws IOException {
+			writer.write(rows == 0 ? insert : ",\n");
+			writer.write(values);
+			if (++rows == SQL_BATCH_SIZE) {
+				finish();
+			}
+		}
+		
+		private void finish() throws IOException {
+			if (rows > 0) {
+				writer.write(";\n");
+				rows = 0;
+			}
+		}
+	}
+	
+	/**
+	 * @return the description of a project, giving its place in its tree
+	 */
+	private String description(int project) {
+		return parents[project] < 0 ? "Synthetic root project"
+				: String.format("Synthetic subproject of %s, depth %d", projectIdentifier(parents[project]), depths[project]);
+	}
+	
+	/**
+	 * @return the number of churn generations applied
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+	
+	/**
+	 * @return the number of projects
+	 */
+	public int getProjectCount() {
+		return projectCount;
+	}
+	
+	/**
+	 * @return the number of users
+	 */
+	public int getUserCount() {
+		return userCount;
+	}
+	
+	/**
+	 * @return the number of memberships
+	 */
+	public int getMembershipCount() {
+		return membershipCount;
+	}
+	
+	/**
+	 * @return the number of members of the largest project
+	 */
+	public int getLargestProjectSize() {
+		int result = 0;
+		for (int project = 0; project < projectCount; project++) {
+			result = Math.max(result, members[project].size);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return the depth of the deepest subproject, 0 if all projects are roots
+	 */
+	public int getDeepestProject() {
+		int result = 0;
+		for (int project = 0; project < projectCount; project++) {
+			result = Math.max(result, depths[project]);
+		}
+		
+		return result;
+	}
+}